@@ -3,6 +3,9 @@ package com.ecommerce.controller;
 import com.ecommerce.dto.response.ApiResponse;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.function.Supplier;
 
 public abstract class BaseController {
 
@@ -19,6 +22,14 @@ public abstract class BaseController {
                 .body(ApiResponse.ok(data, message));
     }
 
+    // conditional GET: answers 304 when If-None-Match carries the current etag, data is only built otherwise
+    protected <T> ResponseEntity<ApiResponse<T>> successIfModified(WebRequest request, String etag, Supplier<T> data, String message) {
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(ApiResponse.ok(data.get(), message));
+    }
+
     protected <T> ResponseEntity<ApiResponse<T>> error(String message, String errorCode, HttpStatus status) {
         return ResponseEntity.status(status).body(ApiResponse.error(message, errorCode));
     }
@@ -3,11 +3,17 @@ package com.ecommerce.controller.admin;
 import com.ecommerce.controller.BaseController;
 import com.ecommerce.dto.response.ApiResponse;
 import com.ecommerce.dto.response.report.SalesReportResponse;
+import com.ecommerce.dto.response.report.SimilarUserRecallReportResponse;
+import com.ecommerce.dto.response.report.SimilarityBatchReportResponse;
+import com.ecommerce.dto.response.report.SimilaritySchedulerMetricsResponse;
 import com.ecommerce.dto.response.report.StaffPerformanceReportResponse;
 import com.ecommerce.dto.response.report.TopProductReportResponse;
 import com.ecommerce.dto.response.report.TopServiceReportResponse;
+import com.ecommerce.dto.response.report.UserVectorReportResponse;
 import com.ecommerce.service.admin.AdminReportService;
 import io.swagger.v3.oas.annotations.Operation;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
@@ -58,4 +64,37 @@ public class AdminReportController extends BaseController {
     public ResponseEntity<ApiResponse<List<StaffPerformanceReportResponse>>> getStaffPerformance() {
         return success(reportService.getStaffPerformance(), "Staff performance fetched successfully");
     }
+
+    @GetMapping("/similar-users-recall")
+    @Operation(summary = "to compare approximate similar user search with the exact one (recall and latency)")
+    public ResponseEntity<ApiResponse<SimilarUserRecallReportResponse>> getSimilarUserRecall(
+            @Min(value = 1, message = "Sample must be at least 1")
+            @Max(value = 1000, message = "Sample must not exceed 1000")
+            @RequestParam(defaultValue = "100") int sample,
+            @Min(value = 1, message = "K must be at least 1")
+            @Max(value = 50, message = "K must not exceed 50")
+            @RequestParam(defaultValue = "30") int k) {
+        return success(reportService.getSimilarUserRecall(sample, k), "Similar user recall report fetched successfully");
+    }
+
+    @GetMapping("/similarity-scheduler")
+    @Operation(summary = "to fetch metrics of the debounced similar user recomputation")
+    public ResponseEntity<ApiResponse<SimilaritySchedulerMetricsResponse>> getSimilaritySchedulerMetrics() {
+        return success(reportService.getSimilaritySchedulerMetrics(), "Similarity scheduler metrics fetched successfully");
+    }
+
+    @GetMapping("/similarity-batch")
+    @Operation(summary = "to fetch size and throughput of the last full similar user rebuild")
+    public ResponseEntity<ApiResponse<SimilarityBatchReportResponse>> getSimilarityBatchReport() {
+        return success(reportService.getSimilarityBatchReport(), "Similarity batch report fetched successfully");
+    }
+
+    @GetMapping("/user-vectors")
+    @Operation(summary = "to fetch size of the decayed user interest vectors and memory saved by pruning")
+    public ResponseEntity<ApiResponse<UserVectorReportResponse>> getUserVectorReport(
+            @Min(value = 1, message = "Sample must be at least 1")
+            @Max(value = 1000, message = "Sample must not exceed 1000")
+            @RequestParam(defaultValue = "100") int sample) {
+        return success(reportService.getUserVectorReport(sample), "User vector report fetched successfully");
+    }
 }
@@ -3,10 +3,14 @@ package com.ecommerce.controller.product;
 import com.ecommerce.controller.BaseController;
 import com.ecommerce.dto.response.ApiResponse;
 import com.ecommerce.dto.response.product.*;
+import com.ecommerce.model.product.PriceBand;
+import com.ecommerce.model.product.ProductSortType;
 import com.ecommerce.model.user.UserPrincipal;
 import com.ecommerce.service.product.ProductService;
 import com.ecommerce.validation.ValidId;
 import io.swagger.v3.oas.annotations.Operation;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Pattern;
 import lombok.RequiredArgsConstructor;
@@ -15,6 +19,7 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.HashMap;
 import java.util.List;
@@ -31,9 +36,8 @@ public class ProductController extends BaseController {
 //   also for dropdowns and options while adding products (admin side)
     @GetMapping("/tags")
     @Operation(summary = "getting details of all available tags to display tag name")
-    public ResponseEntity<ApiResponse<List<TagResponse>>> getAllTags(){
-        List<TagResponse> tags = productService.getAllTags();
-        return success(tags, "Tags fetched");
+    public ResponseEntity<ApiResponse<List<TagResponse>>> getAllTags(WebRequest request){
+        return successIfModified(request, catalogEtag(), productService::getAllTags, "Tags fetched");
     }
 
 //   while user click the tag, the products related to that tag is returned
@@ -42,19 +46,18 @@ public class ProductController extends BaseController {
     @Operation(summary = "getting all products of selected tag")
     public ResponseEntity<ApiResponse<ProductsFromTagResponse>> getProductsOfTag(
             @NotBlank(message = "Tag is required")
-            @PathVariable String tagSlug
+            @PathVariable String tagSlug,
+            WebRequest request
     ){
-        ProductsFromTagResponse response = productService.getProductsOfTag(tagSlug);
-        return success(response, "Products of tag: "+tagSlug);
+        return successIfModified(request, catalogEtag(), () -> productService.getProductsOfTag(tagSlug), "Products of tag: "+tagSlug);
     }
 
 //  end point for getting brand name that can be used in dropdowns (admin) useful while adding products
 //  and for displaying brands we have in brand section (customer sees it)
     @GetMapping("/brand-details")
     @Operation(summary = "getting details of all available brands to display brand name")
-    public ResponseEntity<ApiResponse<List<BrandResponse>>> getAllBrands(){
-        List<BrandResponse> brands = productService.getAllBrands();
-        return success(brands, "Brand name fetched");
+    public ResponseEntity<ApiResponse<List<BrandResponse>>> getAllBrands(WebRequest request){
+        return successIfModified(request, catalogEtag(), productService::getAllBrands, "Brand name fetched");
     }
 
 //    after customer clicks particular brand from the list this end point return brand info
@@ -64,31 +67,30 @@ public class ProductController extends BaseController {
     @Operation(summary = "getting all products of selected brand")
     public ResponseEntity<ApiResponse<ProductsFromBrandResponse>> getProductsOfBrand(
             @NotBlank(message = "Brand is required")
-            @PathVariable String brandSlug
+            @PathVariable String brandSlug,
+            WebRequest request
     ){
-        ProductsFromBrandResponse response = productService.getProductsOfBrand(brandSlug);
-        return success(response, "Products of brand: "+ brandSlug);
+        return successIfModified(request, catalogEtag(), () -> productService.getProductsOfBrand(brandSlug), "Products of brand: "+ brandSlug);
     }
 
 //  end point for getting category name that can be used in dropdowns (admin) useful while adding products
 //  and for displaying categories we have in brand section (customer sees it)
     @GetMapping("/categories")
     @Operation(summary = "getting details of all available categories to display category name")
-    public ResponseEntity<ApiResponse<List<CategoryResponse>>> getAllCategories(){
-        List<CategoryResponse> categories = productService.getAllCategories();
-        return success(categories, "Categories fetched");
+    public ResponseEntity<ApiResponse<List<CategoryResponse>>> getAllCategories(WebRequest request){
+        return successIfModified(request, catalogEtag(), productService::getAllCategories, "Categories fetched");
     }
 
-//    displaying products according to the selected category
+//    displaying products according to the selected category, products of its sub categories included
 //    NOTE SEND SLUG WHILE SENDING DATA IN PATH VARIABLE
     @GetMapping("/category-products/{categorySlug}")
     @Operation(summary = "getting all products of selected category")
     public ResponseEntity<ApiResponse<ProductsFromCategoryResponse>> getProductsOfCategory(
             @NotBlank(message = "Category is required")
-            @PathVariable String categorySlug
+            @PathVariable String categorySlug,
+            WebRequest request
     ){
-        ProductsFromCategoryResponse categories = productService.getProductsOfCategory(categorySlug);
-        return success(categories, "Products fetched of: "+categorySlug);
+        return successIfModified(request, catalogEtag(), () -> productService.getProductsOfCategory(categorySlug), "Products fetched of: "+categorySlug);
     }
 
 //    all products
@@ -108,6 +110,40 @@ public class ProductController extends BaseController {
         return success(response, "Fetched successfully");
     }
 
+//    faceted browse, e.g. ?brand=beardo&tag=new-arrival&price=UNDER_500&price=FROM_500_TO_1000&inStock=true
+//    same facet repeated = OR, different facets = AND, response also has counts for every facet value
+    @GetMapping("/browse")
+    @Operation(summary = "filtering products by brand, category, tag, price band and stock together")
+    public ResponseEntity<ApiResponse<FacetedProductsResponse>> getFacetedProducts(
+            @RequestParam(required = false) List<String> brand,
+            @RequestParam(required = false) List<String> category,
+            @RequestParam(required = false) List<String> tag,
+            @RequestParam(required = false) List<PriceBand> price,
+            @RequestParam(required = false) Boolean inStock,
+            @Min(value = 0, message = "Page must not be negative")
+            @RequestParam(defaultValue = "0") int page,
+            @Min(value = 1, message = "Size must be at least 1")
+            @Max(value = 50, message = "Size must not exceed 50")
+            @RequestParam(defaultValue = "20") int size
+    ){
+        FacetedProductsResponse response = productService.getFacetedProducts(brand, category, tag, price, inStock, page, size);
+        return success(response, "Fetched successfully");
+    }
+
+//    paginated listing, pass nextCursor of previous response to get next page
+    @GetMapping("/page")
+    @Operation(summary = "getting products page by page sorted by newest or price (cursor based)")
+    public ResponseEntity<ApiResponse<ProductPageResponse>> getProductPage(
+            @RequestParam(defaultValue = "NEWEST") ProductSortType sort,
+            @RequestParam(required = false) String cursor,
+            @Min(value = 1, message = "Size must be at least 1")
+            @Max(value = 50, message = "Size must not exceed 50")
+            @RequestParam(defaultValue = "20") int size
+    ){
+        ProductPageResponse response = productService.getProductPage(sort, cursor, size);
+        return success(response, "Fetched successfully");
+    }
+
 //    get details of one product
     @GetMapping("/{id}")
     @Operation(summary = "get detailed info of one product")
@@ -135,18 +171,63 @@ public class ProductController extends BaseController {
     }
 
 
+    //ranked search with pagination
+    @GetMapping("/search")
+    @Operation(summary = "ranked product search over title, descriptions, tags, brand and category")
+    public ResponseEntity<ApiResponse<ProductSearchResponse>> searchProducts(
+            @NotBlank(message = "Searched keyword is needed")
+            @Pattern(
+                    regexp = "^[a-zA-Z0-9 %]+$",
+                    message = "Only letters, numbers, spaces and % are allowed"
+            )
+            @RequestParam String query,
+            @Min(value = 0, message = "Page must not be negative")
+            @RequestParam(defaultValue = "0") int page,
+            @Min(value = 1, message = "Size must be at least 1")
+            @Max(value = 50, message = "Size must not exceed 50")
+            @RequestParam(defaultValue = "15") int size
+    ){
+        ProductSearchResponse response = productService.searchProducts(query, page, size);
+        return success(response, "Fetched searched product successfully");
+    }
+
+
+    //typeahead for search box, products + brands + categories + tags
+    @GetMapping("/suggestions")
+    @Operation(summary = "autocomplete suggestions for what user is typing")
+    public ResponseEntity<ApiResponse<List<SuggestionResponse>>> getSuggestions(
+            @NotBlank(message = "Searched keyword is needed")
+            @Pattern(
+                    regexp = "^[a-zA-Z0-9 %]+$",
+                    message = "Only letters, numbers, spaces and % are allowed"
+            )
+            @RequestParam String query,
+            @Min(value = 1, message = "Limit must be at least 1")
+            @Max(value = 20, message = "Limit must not exceed 20")
+            @RequestParam(defaultValue = "8") int limit
+    ){
+        return success(productService.getSuggestions(query, limit), "Suggestions fetched");
+    }
+
+
 //    index page ko laagi
 
     @GetMapping("/new-arrivals")
     @Operation(summary = "to fetch new arrived products in index page")
-    public ResponseEntity<ApiResponse<List<BriefProductsResponse>>> getNewArrivedProducts(){
-        return success(productService.getNewArrivedProducts(),"New arrived products fetched");
+    public ResponseEntity<ApiResponse<List<BriefProductsResponse>>> getNewArrivedProducts(WebRequest request){
+        return successIfModified(request, catalogEtag(), productService::getNewArrivedProducts,"New arrived products fetched");
     }
 
     @GetMapping("/best-sellers")
     @Operation(summary = "to fetch new arrived products in index page")
-    public ResponseEntity<ApiResponse<List<BriefProductsResponse>>> getBestSeller(){
-        return success(productService.getBestSeller(),"Best selling products fetched");
+    public ResponseEntity<ApiResponse<List<BriefProductsResponse>>> getBestSeller(WebRequest request){
+        return successIfModified(request, catalogEtag(), productService::getBestSeller,"Best selling products fetched");
+    }
+
+//    strong etag over the catalog content, changes whenever a product, stock, tag, brand or category changes
+//    and is the same on every instance serving the same catalog
+    private String catalogEtag(){
+        return "\"catalog-" + Long.toHexString(productService.getCatalogFingerprint()) + "\"";
     }
 
 }
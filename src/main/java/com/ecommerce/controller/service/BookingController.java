@@ -5,6 +5,7 @@ import com.ecommerce.dto.request.service.BookingRequest;
 import com.ecommerce.dto.response.ApiResponse;
 import com.ecommerce.dto.response.appointment.AppointmentDetailResponse;
 import com.ecommerce.dto.response.appointment.AppointmentResponse;
+import com.ecommerce.dto.response.appointment.AvailabilityDayResponse;
 import com.ecommerce.dto.response.payment.PaymentRedirectResponse;
 import com.ecommerce.model.user.UserPrincipal;
 import com.ecommerce.service.appointment.AppointmentBookingService;
@@ -13,6 +14,8 @@ import com.fasterxml.jackson.annotation.JsonFormat;
 import io.swagger.v3.oas.annotations.Operation;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.FutureOrPresent;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -54,6 +57,19 @@ public class BookingController extends BaseController {
         }
     }
 
+    @GetMapping("/availability")
+    @Operation(summary = "to fetch available time of a service for each of the next days (booking calendar)")
+    public ResponseEntity<ApiResponse<List<AvailabilityDayResponse>>> getAvailability(
+            @RequestParam Long serviceId,
+            @RequestParam(required = false) Long staffId,
+            @RequestParam(required = false) @FutureOrPresent(message = "Date cannot be in the past") @JsonFormat(pattern = "yyyy-MM-dd") LocalDate from,
+            @Min(value = 1, message = "Days must be at least 1")
+            @Max(value = 31, message = "Days must not exceed 31")
+            @RequestParam(defaultValue = "14") int days) {
+        LocalDate start = from != null ? from : LocalDate.now();
+        return success(bookingService.getAvailability(serviceId, staffId, start, days), "Availability fetched successfully");
+    }
+
     @PostMapping
     @Operation(summary = "to book an appointment")
     public ResponseEntity<ApiResponse<PaymentRedirectResponse>> createBooking(
@@ -0,0 +1,25 @@
+package com.ecommerce.dto.intermediate;
+
+import java.util.List;
+import java.util.Map;
+
+// precomputed home page sections of one user, only ordered product ids
+// the cards are joined from the catalog cache when the feed is served
+// viewedAt: epoch millis of the view behind a cartAndViewedIds entry (cart adds have none), so views that left the
+// continue browsing window drop out when the feed is served, not only when it is recomputed
+public record HomeFeed(
+        List<Long> recommendedIds,
+        List<Long> purchasedIds,
+        List<Long> cartAndViewedIds,
+        Map<Long, Long> viewedAt
+) {
+    public static final HomeFeed EMPTY = new HomeFeed(List.of(), List.of(), List.of(), Map.of());
+
+    public HomeFeed viewedSince(long epochMillis) {
+        if (viewedAt == null || viewedAt.isEmpty()) return this;
+        List<Long> recent = cartAndViewedIds.stream()
+                .filter(id -> viewedAt.getOrDefault(id, Long.MAX_VALUE) > epochMillis)
+                .toList();
+        return new HomeFeed(recommendedIds, purchasedIds, recent, viewedAt);
+    }
+}
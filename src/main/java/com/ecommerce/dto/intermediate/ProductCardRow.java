@@ -0,0 +1,22 @@
+package com.ecommerce.dto.intermediate;
+
+import com.ecommerce.dto.response.product.BriefProductsResponse;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// flat row for product cards, filled by jpql constructor expression (only thumbnail url, no TEXT description)
+// used by the keyset paginated listing, see ProductRepository.PRODUCT_CARD
+public record ProductCardRow(
+        Long id,
+        String title,
+        String shortDescription,
+        BigDecimal price,
+        Integer stock,
+        String imageUrl,
+        LocalDateTime createdAt
+) {
+    public BriefProductsResponse toBrief() {
+        return new BriefProductsResponse(id, title, shortDescription, price, stock, imageUrl);
+    }
+}
@@ -0,0 +1,7 @@
+package com.ecommerce.dto.intermediate;
+
+public record UserProductScore(
+        Long userId,
+        Long productId,
+        Long score
+) {}
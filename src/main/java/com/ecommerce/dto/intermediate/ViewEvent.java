@@ -0,0 +1,6 @@
+package com.ecommerce.dto.intermediate;
+
+public record ViewEvent(
+        Long userId,
+        Long productId
+) {}
@@ -0,0 +1,13 @@
+package com.ecommerce.dto.intermediate.appointment;
+
+import com.ecommerce.model.user.Staff;
+
+import java.time.LocalTime;
+
+// one free slot of one staff member, with the number of appointments that staff already has that day
+public record StaffSlot(
+        Staff staff,
+        LocalTime startTime,
+        LocalTime endTime,
+        int staffAppointments
+) {}
@@ -0,0 +1,10 @@
+package com.ecommerce.dto.response.appointment;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public record AvailabilityDayResponse(
+        LocalDate date,
+        boolean available,
+        List<AvailableTimeResponse> slots
+) {}
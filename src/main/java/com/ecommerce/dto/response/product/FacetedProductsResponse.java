@@ -0,0 +1,12 @@
+package com.ecommerce.dto.response.product;
+
+import java.util.List;
+import java.util.Map;
+
+// facets: facet name (brand, category, tag, price, stock) -> value -> number of products
+// each count applies every selected filter except the one of its own facet
+public record FacetedProductsResponse(
+        List<BriefProductsResponse> products,
+        int totalHits,
+        Map<String, Map<String, Integer>> facets
+) {}
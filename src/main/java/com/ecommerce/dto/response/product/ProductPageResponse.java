@@ -0,0 +1,9 @@
+package com.ecommerce.dto.response.product;
+
+import java.util.List;
+
+public record ProductPageResponse(
+        List<BriefProductsResponse> products,
+        String nextCursor,
+        boolean hasMore
+) {}
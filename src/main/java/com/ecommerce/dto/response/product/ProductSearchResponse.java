@@ -0,0 +1,10 @@
+package com.ecommerce.dto.response.product;
+
+import java.util.List;
+
+public record ProductSearchResponse(
+        List<BriefProductsResponse> products,
+        int page,
+        int size,
+        int totalHits
+) {}
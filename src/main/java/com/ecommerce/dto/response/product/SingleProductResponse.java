@@ -15,5 +15,6 @@ public record SingleProductResponse(
         Integer stock,
         String sizeMl,
         List<TagResponse> tags,
-        List<ProductImageResponse> images
+        List<ProductImageResponse> images,
+        List<BriefProductsResponse> similarProducts
 ) {}
@@ -0,0 +1,10 @@
+package com.ecommerce.dto.response.product;
+
+import com.ecommerce.model.product.SuggestionType;
+
+public record SuggestionResponse(
+        String text,
+        SuggestionType type,
+        String slug,
+        Long productId
+) {}
@@ -0,0 +1,14 @@
+package com.ecommerce.dto.response.report;
+
+public record SimilarUserRecallReportResponse(
+        int sampledUsers,
+        int k,
+        double recallAtK,
+        double exactAvgMillis,
+        double exactP95Millis,
+        double approxAvgMillis,
+        double approxP95Millis,
+        double avgExactCandidates,
+        double avgApproxCandidates
+) {
+}
@@ -0,0 +1,16 @@
+package com.ecommerce.dto.response.report;
+
+import java.time.LocalDateTime;
+
+public record SimilarityBatchReportResponse(
+        int users,
+        int products,
+        long nonZeros,
+        long multiplyAdds,
+        long loadMillis,
+        long computeMillis,
+        long writeMillis,
+        double usersPerSecond,
+        LocalDateTime finishedAt
+) {
+}
@@ -0,0 +1,13 @@
+package com.ecommerce.dto.response.report;
+
+public record SimilaritySchedulerMetricsResponse(
+        long debounceMillis,
+        int dirtyUsers,
+        long marks,
+        long recomputes,
+        long recomputesSaved,
+        long failures,
+        long lastLagMillis,
+        long maxLagMillis
+) {
+}
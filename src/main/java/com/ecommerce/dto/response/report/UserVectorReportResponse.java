@@ -0,0 +1,15 @@
+package com.ecommerce.dto.response.report;
+
+public record UserVectorReportResponse(
+        int halfLifeDays,
+        int maxProductsPerUser,
+        long users,
+        long storedProducts,
+        long prunedProducts,
+        double averageProductsPerUser,
+        int largestVector,
+        double averageBytesPerUser,
+        long estimatedBytesSaved,
+        double vectorSizeReduction
+) {
+}
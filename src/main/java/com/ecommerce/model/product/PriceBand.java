@@ -0,0 +1,28 @@
+package com.ecommerce.model.product;
+
+import java.math.BigDecimal;
+
+// price ranges used for faceted browsing, lower bound inclusive and upper bound exclusive
+public enum PriceBand {
+    UNDER_500(0, 500),
+    FROM_500_TO_1000(500, 1000),
+    FROM_1000_TO_2000(1000, 2000),
+    FROM_2000_TO_5000(2000, 5000),
+    ABOVE_5000(5000, Integer.MAX_VALUE);
+
+    private final BigDecimal min;
+    private final BigDecimal max;
+
+    PriceBand(int min, int max) {
+        this.min = BigDecimal.valueOf(min);
+        this.max = BigDecimal.valueOf(max);
+    }
+
+    public static PriceBand of(BigDecimal price) {
+        if (price == null) return UNDER_500;
+        for (PriceBand band : values()) {
+            if (price.compareTo(band.min) >= 0 && price.compareTo(band.max) < 0) return band;
+        }
+        return ABOVE_5000;
+    }
+}
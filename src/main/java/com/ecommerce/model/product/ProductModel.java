@@ -92,7 +92,9 @@ import static jakarta.persistence.GenerationType.IDENTITY;
         indexes = {
             @Index(name = "idx_slug", columnList = "slug", unique = true),
             @Index(name = "idx_category", columnList = "category_id"),
-            @Index(name = "idx_brand", columnList = "brand_id")
+            @Index(name = "idx_brand", columnList = "brand_id"),
+            @Index(name = "idx_created_at_id", columnList = "created_at, id"),
+            @Index(name = "idx_selling_price_id", columnList = "selling_price, id")
         }
 )
 public class ProductModel {
@@ -0,0 +1,5 @@
+package com.ecommerce.model.product;
+
+public enum ProductSortType {
+    NEWEST, PRICE_ASC, PRICE_DESC
+}
@@ -0,0 +1,5 @@
+package com.ecommerce.model.product;
+
+public enum SuggestionType {
+    PRODUCT, BRAND, CATEGORY, TAG
+}
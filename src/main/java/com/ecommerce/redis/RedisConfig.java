@@ -3,14 +3,20 @@ package com.ecommerce.redis;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+// redis has to be a single node (or a proxy in front of one): some scripts in RedisService read the vectors
+// of several users at once, and those keys can not share a cluster slot
 @Configuration
 public class RedisConfig {
 
     @Bean
     public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory factory) {
+        if (factory instanceof LettuceConnectionFactory lettuce && lettuce.isClusterAware()) {
+            throw new IllegalStateException("Redis cluster is not supported, multi-user scripts need a single node");
+        }
         RedisTemplate<String, Object> rT = new RedisTemplate<>();
         rT.setConnectionFactory(factory);
 
@@ -1,7 +1,9 @@
 package com.ecommerce.redis;
 
 import com.ecommerce.dto.intermediate.appointment.TempAppointmentDetails;
+import com.ecommerce.dto.intermediate.HomeFeed;
 import com.ecommerce.dto.intermediate.TempOrderDetails;
+import com.ecommerce.dto.intermediate.ViewEvent;
 import com.ecommerce.dto.response.order.AssignedDeliveryResponse;
 import com.ecommerce.model.notification.Notification;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -9,19 +11,206 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 @RequiredArgsConstructor
 @Service
 public class RedisService {
 
     private static final Logger log = LoggerFactory.getLogger(RedisService.class);
+
+    // user vectors decay: a score halves every 30 days, at most 100 products are kept per user
+    // hash field "t" is the time (epoch seconds) the stored scores are valid at, every other field is a product
+    public static final String VECTOR_TIME_FIELD = "t";
+    public static final int VECTOR_HALF_LIFE_DAYS = 30;
+    public static final int VECTOR_MAX_PRODUCTS = 100;
+    private static final double VECTOR_MIN_SCORE = 0.1;
+
+    // KEYS: vector, stats hash / ARGV: now, half life seconds, max products, min score, ttl seconds,
+    // then product id + score pairs; returns the dropped product ids, the caller removes the user from their
+    // product_users sets (those keys are not known before the script runs, so they can not be declared in KEYS)
+    // a new score is scaled up to time t (forward decay) so a write is one HINCRBYFLOAT,
+    // the whole vector is rebased to now only once t is older than an eighth of the half life;
+    // faded and negative interests are dropped on rebase, the weakest ones once the vector outgrows the cap
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final RedisScript<List<Object>> DECAYED_INCREMENT = new DefaultRedisScript<>("""
+            local now, halfLife = tonumber(ARGV[1]), tonumber(ARGV[2])
+            local maxProducts, minScore = tonumber(ARGV[3]), tonumber(ARGV[4])
+            local t = tonumber(redis.call('HGET', KEYS[1], 't')) or now
+            local dropped = {}
+
+            if now - t > halfLife / 8 then
+                local factor = 2 ^ ((t - now) / halfLife)
+                local fields = redis.call('HGETALL', KEYS[1])
+                for i = 1, #fields, 2 do
+                    if fields[i] ~= 't' then
+                        local score = tonumber(fields[i + 1]) * factor
+                        if score < minScore then
+                            redis.call('HDEL', KEYS[1], fields[i])
+                            dropped[#dropped + 1] = fields[i]
+                        else
+                            redis.call('HSET', KEYS[1], fields[i], tostring(score))
+                        end
+                    end
+                end
+                t = now
+            end
+
+            local scale = 2 ^ ((now - t) / halfLife)
+            for i = 6, #ARGV, 2 do
+                redis.call('HINCRBYFLOAT', KEYS[1], ARGV[i], tonumber(ARGV[i + 1]) * scale)
+            end
+            redis.call('HSET', KEYS[1], 't', t)
+
+            if redis.call('HLEN', KEYS[1]) - 1 > maxProducts + maxProducts / 4 then
+                local fields = redis.call('HGETALL', KEYS[1])
+                local entries = {}
+                for i = 1, #fields, 2 do
+                    if fields[i] ~= 't' then entries[#entries + 1] = {fields[i], tonumber(fields[i + 1])} end
+                end
+                table.sort(entries, function(a, b) return a[2] > b[2] end)
+                for i = maxProducts + 1, #entries do
+                    redis.call('HDEL', KEYS[1], entries[i][1])
+                    dropped[#dropped + 1] = entries[i][1]
+                end
+            end
+
+            if #dropped > 0 then redis.call('HINCRBY', KEYS[2], 'pruned', #dropped) end
+            redis.call('EXPIRE', KEYS[1], ARGV[5])
+            return dropped
+            """, (Class) List.class);
+
+    // KEYS: own vector, then the neighbours' vectors / ARGV: result size, now, half life
+    // neighbour scores are decayed from their time field to now so fresh interests of one neighbour beat stale ones of another
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final RedisScript<List<Object>> NEIGHBOUR_RECOMMENDATIONS = new DefaultRedisScript<>("""
+            local own = redis.call('HKEYS', KEYS[1])
+            if #own == 0 then return {} end
+            local seen = {}
+            for _, pid in ipairs(own) do seen[pid] = true end
+
+            local scores, ids = {}, {}
+            for k = 2, #KEYS do
+                local vector = redis.call('HGETALL', KEYS[k])
+                local factor = 1
+                for i = 1, #vector, 2 do
+                    if vector[i] == 't' then factor = 2 ^ ((tonumber(vector[i + 1]) - tonumber(ARGV[2])) / tonumber(ARGV[3])) end
+                end
+                for i = 1, #vector, 2 do
+                    local pid = vector[i]
+                    if pid ~= 't' and not seen[pid] then
+                        if scores[pid] == nil then
+                            scores[pid] = 0
+                            ids[#ids + 1] = pid
+                        end
+                        scores[pid] = scores[pid] + tonumber(vector[i + 1]) * factor
+                    end
+                end
+            end
+
+            table.sort(ids, function(a, b)
+                if scores[a] ~= scores[b] then return scores[a] > scores[b] end
+                return tonumber(a) < tonumber(b)
+            end)
+            local top = {}
+            for i = 1, math.min(tonumber(ARGV[1]), #ids) do top[i] = ids[i] end
+            return top
+            """, (Class) List.class);
+
+    // computed free time of staff days (see OccupancyCache): one hash per staff, a field per date plus a version "v"
+    // every invalidation bumps the version and a save only lands if the version is the one read before computing,
+    // so a day computed from postgres just before a booking committed cannot overwrite the invalidation
+    private static final int STAFF_OCCUPANCY_TTL_DAYS = 7;
+
+    // KEYS: staff hashes / ARGV: ttl seconds, today, then per key: version read, field count, date + value pairs
+    // dates before today are dropped on the way
+    private static final RedisScript<Long> SAVE_STAFF_OCCUPANCY = new DefaultRedisScript<>("""
+            local ttl, today, a = ARGV[1], ARGV[2], 3
+            local saved = 0
+            for _, key in ipairs(KEYS) do
+                local version, count = ARGV[a], tonumber(ARGV[a + 1])
+                local first = a + 2
+                a = first + 2 * count
+                if (redis.call('HGET', key, 'v') or '0') == version then
+                    for _, field in ipairs(redis.call('HKEYS', key)) do
+                        if field ~= 'v' and field < today then redis.call('HDEL', key, field) end
+                    end
+                    for i = first, a - 1, 2 do redis.call('HSET', key, ARGV[i], ARGV[i + 1]) end
+                    redis.call('EXPIRE', key, ttl)
+                    saved = saved + 1
+                end
+            end
+            return saved
+            """, Long.class);
+
+    // KEYS: staff hash / ARGV: ttl seconds, then the dates to drop, none = every date
+    private static final RedisScript<Long> INVALIDATE_STAFF_OCCUPANCY = new DefaultRedisScript<>("""
+            if #ARGV == 1 then
+                for _, field in ipairs(redis.call('HKEYS', KEYS[1])) do
+                    if field ~= 'v' then redis.call('HDEL', KEYS[1], field) end
+                end
+            else
+                for i = 2, #ARGV do redis.call('HDEL', KEYS[1], ARGV[i]) end
+            end
+            local version = redis.call('HINCRBY', KEYS[1], 'v', 1)
+            redis.call('EXPIRE', KEYS[1], ARGV[1])
+            return version
+            """, Long.class);
+
+    // a booking waits this long for its payment: temp appointment ttl and slot hold ttl
+    public static final int TEMP_APPOINTMENT_TTL_MINUTES = 30;
+
+    // one hash per staff day "slot_hold:{<date>}:<staffId>", field = transaction id, value = "<start>:<end>:<expires at>"
+    // (minutes of the day, epoch millis); the range lives in the value so overlapping holds of different ranges collide
+    // the date is the hash tag, so all candidate keys of one booking land on the same cluster slot
+    // KEYS: candidate staff day keys in order of preference
+    // ARGV: start minute, end minute, transaction id, now, ttl millis, then the staff ids of KEYS in the same order
+    // holds the range on the first staff without an unexpired overlapping hold and returns its id, -1 if none is left
+    private static final RedisScript<Long> HOLD_SLOT = new DefaultRedisScript<>("""
+            local startMinute, endMinute = tonumber(ARGV[1]), tonumber(ARGV[2])
+            local transactionId, now, ttl = ARGV[3], tonumber(ARGV[4]), tonumber(ARGV[5])
+            for i = 1, #KEYS do
+                local key = KEYS[i]
+                local holds = redis.call('HGETALL', key)
+                local free = true
+                for j = 1, #holds, 2 do
+                    local s, e, expiresAt = string.match(holds[j + 1], '(%d+):(%d+):(%d+)')
+                    if tonumber(expiresAt) <= now then
+                        redis.call('HDEL', key, holds[j])
+                    elseif holds[j] ~= transactionId and tonumber(s) < endMinute and tonumber(e) > startMinute then
+                        free = false
+                    end
+                end
+                if free then
+                    redis.call('HSET', key, transactionId, startMinute .. ':' .. endMinute .. ':' .. (now + ttl))
+                    redis.call('PEXPIRE', key, ttl)
+                    return tonumber(ARGV[5 + i])
+                end
+            end
+            return -1
+            """, Long.class);
+
     private final RedisTemplate<String, Object> redisTemplate;
     private final ObjectMapper objectMapper;
 
@@ -49,21 +238,302 @@ public class RedisService {
         redisTemplate.delete(email);
     }
 
-    // for incrementing user vector after any activity
+    // for incrementing user vector after any activity (time decayed and capped, see DECAYED_INCREMENT)
+    // also keeps the inverted index product -> users, so similar users are found without scanning every vector
     public void incrementUserVector(Long userId, Long productId, int score) {
-        String key = "user_vector:" + userId;
-        redisTemplate.opsForHash().increment(key, productId.toString(), score);
-        redisTemplate.expire(key, 90, TimeUnit.DAYS); // Optional: expire in 90 days if user inactive
-    }
-
-    // for updating viewed product
-    public void updateViewedProduct(Long userId, Long productId) {
-        String viewedKey = "viewed:" + userId + ":" + productId;
-        boolean alreadyViewed = redisTemplate.hasKey(viewedKey);
-        if (!alreadyViewed) {
-            incrementUserVector(userId, productId, 1);
-            redisTemplate.opsForValue().set(viewedKey, "1", 48, TimeUnit.HOURS);
+        List<Object> dropped = redisTemplate.execute(DECAYED_INCREMENT, vectorKeys(userId), decayedIncrementArgs(productId, score));
+        if (dropped != null && !dropped.isEmpty()) removeProductUsers(Map.of(userId, dropped));
+        addProductUser(productId.toString(), userId);
+    }
+
+    // products dropped from user vectors by decay or the size cap since the counter was created
+    public long getPrunedVectorProducts() {
+        Object pruned = redisTemplate.opsForHash().get("user_vector_stats", "pruned");
+        return pruned != null ? Long.parseLong(pruned.toString()) : 0;
+    }
+
+    // bytes redis uses for the key, null when it does not exist
+    public Long memoryUsage(String key) {
+        Object usage = redisTemplate.execute((RedisCallback<Object>) connection ->
+                connection.execute("MEMORY", "USAGE".getBytes(), key.getBytes()));
+        return usage instanceof Long bytes ? bytes : null;
+    }
+
+    private List<String> vectorKeys(Long userId) {
+        return List.of("user_vector:" + userId, "user_vector_stats");
+    }
+
+    private Object[] decayedIncrementArgs(Long productId, int score) {
+        return new Object[]{
+                String.valueOf(System.currentTimeMillis() / 1000),
+                String.valueOf(TimeUnit.DAYS.toSeconds(VECTOR_HALF_LIFE_DAYS)),
+                String.valueOf(VECTOR_MAX_PRODUCTS),
+                String.valueOf(VECTOR_MIN_SCORE),
+                String.valueOf(TimeUnit.DAYS.toSeconds(90)), // expire in 90 days if user inactive
+                productId.toString(),
+                String.valueOf(score)
+        };
+    }
+
+    private void addProductUser(String productId, Long userId) {
+        String key = "product_users:" + productId;
+        redisTemplate.opsForSet().add(key, userId.toString());
+        redisTemplate.expire(key, 90, TimeUnit.DAYS);
+    }
+
+    // user id -> product ids pruned from that user's vector, one pipelined SREM each
+    private void removeProductUsers(Map<Long, ? extends Collection<?>> droppedByUser) {
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                droppedByUser.forEach((userId, productIds) -> productIds.forEach(pid ->
+                        ops.opsForSet().remove("product_users:" + pid, userId.toString())));
+                return null;
+            }
+        });
+    }
+
+    // users that interacted with any of the given products, one pipelined SMEMBERS per product
+    public Set<Long> getUsersOfProducts(Collection<?> productIds) {
+        if (productIds.isEmpty()) return new HashSet<>();
+        List<Object> members = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                productIds.forEach(pid -> ops.opsForSet().members("product_users:" + pid));
+                return null;
+            }
+        });
+
+        Set<Long> userIds = new HashSet<>();
+        for (Object set : members) {
+            if (set instanceof Collection<?> users) users.forEach(u -> userIds.add(Long.parseLong(u.toString())));
+        }
+        return userIds;
+    }
+
+    // vectors of many users in one pipeline, users without a vector are left out
+    @SuppressWarnings("unchecked")
+    public Map<Long, Map<Object, Object>> getUserVectors(Collection<Long> userIds) {
+        List<Long> ordered = List.copyOf(userIds);
+        if (ordered.isEmpty()) return Map.of();
+        List<Object> vectors = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                ordered.forEach(id -> ops.opsForHash().entries("user_vector:" + id));
+                return null;
+            }
+        });
+
+        Map<Long, Map<Object, Object>> result = new HashMap<>();
+        for (int i = 0; i < ordered.size(); i++) {
+            if (vectors.get(i) instanceof Map<?, ?> vector && !vector.isEmpty()) {
+                result.put(ordered.get(i), (Map<Object, Object>) vector);
+            }
+        }
+        return result;
+    }
+
+    // LSH signatures of user vectors (see UserSimilarityIndex), one hash field per user: "<hex>:<hex>"
+    public void saveUserSignature(Long userId, long[] signature) {
+        redisTemplate.opsForHash().put("user_signature", userId.toString(),
+                Long.toHexString(signature[0]) + ":" + Long.toHexString(signature[1]));
+    }
+
+    public void saveUserSignatures(Map<Long, long[]> signatures) {
+        if (signatures.isEmpty()) return;
+        Map<String, String> fields = new HashMap<>();
+        signatures.forEach((userId, signature) -> fields.put(userId.toString(),
+                Long.toHexString(signature[0]) + ":" + Long.toHexString(signature[1])));
+        redisTemplate.opsForHash().putAll("user_signature", fields);
+    }
+
+    public void deleteUserSignature(Long userId) {
+        redisTemplate.opsForHash().delete("user_signature", userId.toString());
+    }
+
+    // set once every stored vector has a signature, until then the index is filled from the vectors
+    public boolean isUserSignatureBackfilled() {
+        return Boolean.TRUE.equals(redisTemplate.hasKey("user_signature_backfilled"));
+    }
+
+    public void markUserSignatureBackfilled() {
+        redisTemplate.opsForValue().set("user_signature_backfilled", "1");
+    }
+
+    public void forEachUserSignature(BiConsumer<Long, long[]> consumer) {
+        ScanOptions options = ScanOptions.scanOptions().count(1000).build();
+        try (Cursor<Map.Entry<Object, Object>> cursor = redisTemplate.opsForHash().scan("user_signature", options)) {
+            while (cursor.hasNext()) {
+                Map.Entry<Object, Object> entry = cursor.next();
+                String[] parts = entry.getValue().toString().split(":");
+                consumer.accept(Long.parseLong(entry.getKey().toString()),
+                        new long[]{Long.parseUnsignedLong(parts[0], 16), Long.parseUnsignedLong(parts[1], 16)});
+            }
+        }
+    }
+
+    // streams every user vector: SCAN over the keys, HGETALL pipelined per chunk of keys
+    public void forEachUserVector(int chunkSize, BiConsumer<Long, Map<Object, Object>> consumer) {
+        ScanOptions options = ScanOptions.scanOptions().match("user_vector:*").count(chunkSize).build();
+        List<Long> chunk = new ArrayList<>(chunkSize);
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                chunk.add(Long.parseLong(cursor.next().substring("user_vector:".length())));
+                if (chunk.size() == chunkSize) {
+                    getUserVectors(chunk).forEach(consumer);
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) getUserVectors(chunk).forEach(consumer);
+    }
+
+    // one time fill of product -> users from vectors written before the index existed
+    // uses SCAN so redis is never blocked the way KEYS does
+    public void backfillProductUsersIndex() {
+        if (Boolean.FALSE.equals(redisTemplate.opsForValue().setIfAbsent("product_users_backfilled", "1"))) return;
+
+        int users = 0;
+        ScanOptions options = ScanOptions.scanOptions().match("user_vector:*").count(500).build();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                String key = cursor.next();
+                Long userId = Long.parseLong(key.substring("user_vector:".length()));
+                redisTemplate.opsForHash().keys(key).stream()
+                        .filter(pid -> !VECTOR_TIME_FIELD.equals(pid))
+                        .forEach(pid -> addProductUser(pid.toString(), userId));
+                users++;
+            }
+        } catch (RuntimeException e) {
+            redisTemplate.delete("product_users_backfilled"); // retry on next startup
+            throw e;
+        }
+        log.info("Backfilled product -> users index from {} user vectors", users);
+    }
+
+    // for updating viewed products in batch: one pipeline claims the "viewed" keys (SET NX),
+    // a second one bumps the vectors only for products the user did not view in the last 48 hours
+    public void updateViewedProducts(Collection<ViewEvent> views) {
+        if (views.isEmpty()) return;
+        List<ViewEvent> ordered = List.copyOf(views);
+
+        List<Object> claimed = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (ViewEvent view : ordered) {
+                    ops.opsForValue().setIfAbsent("viewed:" + view.userId() + ":" + view.productId(), "1", 48, TimeUnit.HOURS);
+                }
+                return null;
+            }
+        });
+
+        List<ViewEvent> firstViews = new ArrayList<>();
+        for (int i = 0; i < ordered.size(); i++) {
+            if (Boolean.TRUE.equals(claimed.get(i))) firstViews.add(ordered.get(i));
+        }
+        if (firstViews.isEmpty()) return;
+
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (ViewEvent view : firstViews) {
+                    ops.execute(DECAYED_INCREMENT, vectorKeys(view.userId()), decayedIncrementArgs(view.productId(), 1));
+                    String usersKey = "product_users:" + view.productId();
+                    ops.opsForSet().add(usersKey, view.userId().toString());
+                    ops.expire(usersKey, 90, TimeUnit.DAYS);
+                }
+                return null;
+            }
+        });
+
+        // three replies per view, the script's one lists the products it pruned;
+        // a product viewed again later in the batch was added back, so it stays in the index
+        Map<Long, Set<Object>> dropped = new HashMap<>();
+        for (int i = 0; i < firstViews.size(); i++) {
+            ViewEvent view = firstViews.get(i);
+            Set<Object> userDropped = dropped.computeIfAbsent(view.userId(), k -> new HashSet<>());
+            if (results.get(3 * i) instanceof List<?> pruned) userDropped.addAll(pruned);
+            userDropped.remove(view.productId().toString());
         }
+        dropped.values().removeIf(Set::isEmpty);
+        if (!dropped.isEmpty()) removeProductUsers(dropped);
+    }
+
+    // popularity: "popular:day:<date>" and "popular:day:<date>:<category>" zsets hold one day of scores,
+    // "popular:window" and "popular:window:<category>" their union over the last days (see PopularityRanking)
+    public void incrementPopularity(LocalDate day, Map<Long, Double> scores, Map<Long, String> categories) {
+        String dayKey = "popular:day:" + day;
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                Set<String> touched = new HashSet<>();
+                scores.forEach((productId, score) -> {
+                    ops.opsForZSet().incrementScore(dayKey, productId.toString(), score);
+                    touched.add(dayKey);
+                    String category = categories.get(productId);
+                    if (category != null) {
+                        ops.opsForZSet().incrementScore(dayKey + ":" + category, productId.toString(), score);
+                        touched.add(dayKey + ":" + category);
+                    }
+                });
+                touched.forEach(key -> ops.expire(key, 8, TimeUnit.DAYS));
+                return null;
+            }
+        });
+    }
+
+    public void rebuildPopularityWindow(List<LocalDate> days, Collection<String> categories) {
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                unionDays(ops, days, "", "popular:window");
+                categories.forEach(category -> unionDays(ops, days, ":" + category, "popular:window:" + category));
+                return null;
+            }
+        });
+    }
+
+    private void unionDays(RedisOperations<String, Object> ops, List<LocalDate> days, String suffix, String destination) {
+        List<String> dayKeys = days.stream().map(day -> "popular:day:" + day + suffix).toList();
+        // ZUNIONSTORE replaces the destination atomically, missing days count as empty
+        ops.opsForZSet().unionAndStore(dayKeys.get(0), dayKeys.subList(1, dayKeys.size()), destination);
+        // cart removals score negative, a product taken back out as often as it was added is not popular
+        ops.opsForZSet().removeRangeByScore(destination, Double.NEGATIVE_INFINITY, 0);
+    }
+
+    // most popular product ids of the current window, categorySlug null for the global ranking
+    public List<Long> getPopularProductIds(String categorySlug, int limit) {
+        String key = categorySlug == null ? "popular:window" : "popular:window:" + categorySlug;
+        Set<Object> ids = redisTemplate.opsForZSet().reverseRange(key, 0, limit - 1);
+        if (ids == null) return new ArrayList<>();
+        return ids.stream().map(id -> Long.parseLong(id.toString())).toList();
+    }
+
+    // product id -> score of the whole global window
+    public Map<Long, Double> getPopularityScores() {
+        Set<ZSetOperations.TypedTuple<Object>> tuples = redisTemplate.opsForZSet().rangeWithScores("popular:window", 0, -1);
+        Map<Long, Double> scores = new HashMap<>();
+        if (tuples == null) return scores;
+        tuples.forEach(tuple -> {
+            if (tuple.getValue() != null && tuple.getScore() != null) {
+                scores.put(Long.parseLong(tuple.getValue().toString()), tuple.getScore());
+            }
+        });
+        return scores;
     }
 
     // Get a user's interest vector safely
@@ -78,10 +548,107 @@ public class RedisService {
         topSimilar.forEach(entry -> redisTemplate.opsForZSet().add(key, entry.getKey().toString(), entry.getValue()));
     }
 
-    // Get the IDs of similar users
-    public Set<Object> getSimilarUserIds(Long userId) {
-        // Fetches top 30 most similar users
-        return redisTemplate.opsForZSet().reverseRange("user_similar:" + userId, 0, 29);
+    // same as saveSimilarUsers for many users, DEL + ZADD sent in one pipeline
+    public void saveSimilarUsersBatch(Map<Long, List<Map.Entry<Long, Double>>> similarByUser) {
+        if (similarByUser.isEmpty()) return;
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                similarByUser.forEach((userId, topSimilar) -> {
+                    String key = "user_similar:" + userId;
+                    ops.delete(key);
+                    topSimilar.forEach(entry -> ops.opsForZSet().add(key, entry.getKey().toString(), entry.getValue()));
+                });
+                return null;
+            }
+        });
+    }
+
+    // item-item table: one hash field per product, value = similar product ids joined by ","
+    // built under a temporary key and renamed over the table in one MULTI/EXEC, readers never see it empty or half written
+    public void saveItemNeighbours(Map<Long, long[]> neighbours) {
+        Map<String, String> fields = new HashMap<>();
+        neighbours.forEach((productId, similar) -> {
+            StringBuilder value = new StringBuilder();
+            for (long id : similar) {
+                if (!value.isEmpty()) value.append(',');
+                value.append(id);
+            }
+            fields.put(productId.toString(), value.toString());
+        });
+        if (fields.isEmpty()) {
+            redisTemplate.delete("item_similar");
+            return;
+        }
+        redisTemplate.execute(new SessionCallback<List<Object>>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> List<Object> execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                ops.multi();
+                ops.delete("item_similar:building");
+                ops.opsForHash().putAll("item_similar:building", fields);
+                ops.rename("item_similar:building", "item_similar");
+                return ops.exec();
+            }
+        });
+    }
+
+    public Map<Long, long[]> getItemNeighbours() {
+        Map<Long, long[]> neighbours = new HashMap<>();
+        redisTemplate.opsForHash().entries("item_similar").forEach((productId, value) -> {
+            long[] ids = Arrays.stream(value.toString().split(",")).mapToLong(Long::parseLong).toArray();
+            neighbours.put(Long.parseLong(productId.toString()), ids);
+        });
+        return neighbours;
+    }
+
+    // products the top similar users interacted with and the user did not, summed scores, best first
+    // two round trips: the neighbour ids, then the script sums their vectors server side;
+    // every vector it reads is passed in KEYS (they span slots, see RedisConfig for the single node requirement)
+    public List<Long> getNeighbourRecommendations(Long userId, int neighbours, int limit) {
+        Set<Object> neighbourIds = redisTemplate.opsForZSet().reverseRange("user_similar:" + userId, 0, neighbours - 1);
+        if (neighbourIds == null || neighbourIds.isEmpty()) return new ArrayList<>();
+        List<String> keys = new ArrayList<>(neighbourIds.size() + 1);
+        keys.add("user_vector:" + userId);
+        neighbourIds.forEach(id -> keys.add("user_vector:" + id));
+
+        List<Object> ids = redisTemplate.execute(NEIGHBOUR_RECOMMENDATIONS, keys,
+                String.valueOf(limit),
+                String.valueOf(System.currentTimeMillis() / 1000),
+                String.valueOf(TimeUnit.DAYS.toSeconds(VECTOR_HALF_LIFE_DAYS)));
+        if (ids == null) return new ArrayList<>();
+        return ids.stream().map(id -> Long.parseLong(id.toString())).toList();
+    }
+
+    // precomputed home feed of a user, refreshed on every activity of that user
+    public void saveHomeFeed(Long userId, HomeFeed feed) {
+        try {
+            String json = objectMapper.writeValueAsString(feed);
+            redisTemplate.opsForValue().set("home_feed:" + userId, json, 7, TimeUnit.DAYS);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize HomeFeed record for Redis", e);
+        } catch (Exception e) {
+            log.error("Failed to save home feed to Redis", e);
+        }
+    }
+
+    public HomeFeed getHomeFeed(Long userId) {
+        try {
+            Object value = redisTemplate.opsForValue().get("home_feed:" + userId);
+            if (value == null)
+                return null;
+
+            return objectMapper.readValue(value.toString(), HomeFeed.class);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to deserialize HomeFeed record from Redis", e);
+            return null;
+        } catch (Exception e) {
+            log.error("Failed to retrieve home feed from Redis", e);
+            return null;
+        }
     }
 
     // temporary order service
@@ -129,7 +696,7 @@ public class RedisService {
         try {
             key = "appointment:"+key;
             String json = objectMapper.writeValueAsString(details);
-            redisTemplate.opsForValue().set(key, json, 30, TimeUnit.MINUTES);
+            redisTemplate.opsForValue().set(key, json, TEMP_APPOINTMENT_TTL_MINUTES, TimeUnit.MINUTES);
             log.info("Saved temp appointment to Redis: {}", key);
         } catch (JsonProcessingException e) {
             log.error("Failed to serialize TempAppointmentDetails for Redis", e);
@@ -164,6 +731,79 @@ public class RedisService {
         }
     }
 
+    // holds [startMinute, endMinute) of the date for the payment window on the first free candidate, null if all are held
+    public Long holdSlot(List<Long> staffIds, LocalDate date, int startMinute, int endMinute, String transactionId) {
+        if (staffIds.isEmpty()) return null;
+        List<String> keys = staffIds.stream().map(id -> slotHoldKey(id, date)).toList();
+        List<Object> args = new ArrayList<>();
+        args.add(String.valueOf(startMinute));
+        args.add(String.valueOf(endMinute));
+        args.add(transactionId);
+        args.add(String.valueOf(System.currentTimeMillis()));
+        args.add(String.valueOf(TimeUnit.MINUTES.toMillis(TEMP_APPOINTMENT_TTL_MINUTES)));
+        staffIds.forEach(id -> args.add(id.toString()));
+        Long staffId = redisTemplate.execute(HOLD_SLOT, keys, args.toArray());
+        return staffId == null || staffId < 0 ? null : staffId;
+    }
+
+    public void releaseSlotHold(Long staffId, LocalDate date, String transactionId) {
+        redisTemplate.opsForHash().delete(slotHoldKey(staffId, date), transactionId);
+    }
+
+    private static String slotHoldKey(Long staffId, LocalDate date) {
+        return "slot_hold:{" + date + "}:" + staffId;
+    }
+
+    // staff occupancy hashes of many staff in one pipeline, an empty map for staff without one
+    public Map<Long, Map<Object, Object>> getStaffOccupancies(Collection<Long> staffIds) {
+        List<Long> ordered = List.copyOf(staffIds);
+        if (ordered.isEmpty()) return Map.of();
+        List<Object> hashes = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                ordered.forEach(id -> ops.opsForHash().entries("staff_occupancy:" + id));
+                return null;
+            }
+        });
+
+        Map<Long, Map<Object, Object>> result = new HashMap<>();
+        for (int i = 0; i < ordered.size(); i++) {
+            Map<Object, Object> hash = new HashMap<>();
+            if (hashes.get(i) instanceof Map<?, ?> fields) fields.forEach(hash::put);
+            result.put(ordered.get(i), hash);
+        }
+        return result;
+    }
+
+    // days: staff id -> date -> encoded occupancy, versions: the "v" field read before computing them ("0" if none)
+    public void saveStaffOccupancies(Map<Long, String> versions, Map<Long, Map<LocalDate, String>> days, LocalDate today) {
+        if (days.isEmpty()) return;
+        List<String> keys = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        args.add(String.valueOf(TimeUnit.DAYS.toSeconds(STAFF_OCCUPANCY_TTL_DAYS)));
+        args.add(today.toString());
+        days.forEach((staffId, values) -> {
+            keys.add("staff_occupancy:" + staffId);
+            args.add(versions.getOrDefault(staffId, "0"));
+            args.add(String.valueOf(values.size()));
+            values.forEach((date, value) -> {
+                args.add(date.toString());
+                args.add(value);
+            });
+        });
+        redisTemplate.execute(SAVE_STAFF_OCCUPANCY, keys, args.toArray());
+    }
+
+    // drops the given dates of a staff member, every date if none are given
+    public void invalidateStaffOccupancy(Long staffId, Collection<LocalDate> dates) {
+        List<Object> args = new ArrayList<>();
+        args.add(String.valueOf(TimeUnit.DAYS.toSeconds(STAFF_OCCUPANCY_TTL_DAYS)));
+        dates.forEach(date -> args.add(date.toString()));
+        redisTemplate.execute(INVALIDATE_STAFF_OCCUPANCY, List.of("staff_occupancy:" + staffId), args.toArray());
+    }
+
     // notification
     // Gets the current unread count.
     public Integer getUnreadCount(Long userId) {
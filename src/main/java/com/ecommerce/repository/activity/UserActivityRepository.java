@@ -1,5 +1,7 @@
 package com.ecommerce.repository.activity;
 
+import com.ecommerce.dto.intermediate.ProductPopularity;
+import com.ecommerce.dto.intermediate.UserProductScore;
 import com.ecommerce.model.activity.UserActivity;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
@@ -12,15 +14,26 @@ import java.util.List;
 @Repository
 public interface UserActivityRepository extends JpaRepository<UserActivity, Long> {
 
-    List<UserActivity> findByUserId(Long userId);
-
-    @Modifying
-    @Query(value = "INSERT INTO user_activity (user_id, product_id, activity_type, score, created_at, updated_at) " +
+    // also sent as a jdbc batch by UserActivityService.recordViews, keep the named parameters in sync
+    String UPSERT_ACTIVITY = "INSERT INTO user_activity (user_id, product_id, activity_type, score, created_at, updated_at) " +
             "VALUES (:userId, :productId, CAST(:activityType AS text), :score, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP) " +
             "ON CONFLICT (user_id, product_id, activity_type) " +
             "DO UPDATE SET " +
             "  score = user_activity.score + EXCLUDED.score, " +
-            "  updated_at = CURRENT_TIMESTAMP", nativeQuery = true)
+            "  updated_at = CURRENT_TIMESTAMP";
+
+    List<UserActivity> findByUserId(Long userId);
+
+    @Query("SELECT new com.ecommerce.dto.intermediate.ProductPopularity(a.productId, SUM(a.score)) " +
+            "FROM UserActivity a GROUP BY a.productId")
+    List<ProductPopularity> sumScoreGroupByProduct();
+
+    @Query("SELECT new com.ecommerce.dto.intermediate.UserProductScore(a.userId, a.productId, SUM(a.score)) " +
+            "FROM UserActivity a GROUP BY a.userId, a.productId")
+    List<UserProductScore> sumScoreGroupByUserAndProduct();
+
+    @Modifying
+    @Query(value = UPSERT_ACTIVITY, nativeQuery = true)
     void upsertActivity(
             @Param("userId") Long userId,
             @Param("productId") Long productId,
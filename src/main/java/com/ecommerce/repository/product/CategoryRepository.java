@@ -2,8 +2,10 @@ package com.ecommerce.repository.product;
 
 import com.ecommerce.model.product.CategoryModel;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -11,4 +13,7 @@ public interface CategoryRepository extends JpaRepository<CategoryModel, Long> {
 
     Optional<CategoryModel> findBySlug(String slug);
 
+    @Query("SELECT c FROM CategoryModel c LEFT JOIN FETCH c.parent")
+    List<CategoryModel> findAllWithParent();
+
 }
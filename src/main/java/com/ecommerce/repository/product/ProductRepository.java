@@ -1,7 +1,9 @@
 package com.ecommerce.repository.product;
 
+import com.ecommerce.dto.intermediate.ProductCardRow;
 import com.ecommerce.model.product.ProductModel;
 import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
@@ -9,6 +11,9 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -34,16 +39,49 @@ public interface ProductRepository extends JpaRepository<ProductModel, Long> {
     @EntityGraph(value = "Product.images", type = EntityGraph.EntityGraphType.FETCH)
     List<ProductModel> findAllByIdIn(@Param("recommendedIds") List<Long> recommendedIds);
 
-    @EntityGraph(value = "Product.images", type = EntityGraph.EntityGraphType.FETCH)
-    List<ProductModel> findAllByIdNotIn(@Param("recommendedIds") List<Long> recommendedIds);
-
     @EntityGraph(value = "Product.images.brand.category.tags", type = EntityGraph.EntityGraphType.FETCH)
     Optional<ProductModel> findProductDetailsById(@Param("id") Long id);
 
+    //  for building and refreshing the in memory catalog snapshot
+    @EntityGraph(value = "Product.images.brand.category.tags", type = EntityGraph.EntityGraphType.FETCH)
+    @Query("SELECT p FROM ProductModel p")
+    List<ProductModel> findAllForCatalog();
+
+    @EntityGraph(value = "Product.images.brand.category.tags", type = EntityGraph.EntityGraphType.FETCH)
+    @Query("SELECT p FROM ProductModel p WHERE p.id IN :ids")
+    List<ProductModel> findAllForCatalogByIdIn(@Param("ids") Collection<Long> ids);
+
     @EntityGraph(value = "Product.tags", type = EntityGraph.EntityGraphType.FETCH)
     @Query("SELECT p FROM ProductModel p WHERE p.id = :productId")
     Optional<ProductModel> findProductByIdWithTags(@Param("productId") Long productId);
 
+    //  card projection: one flat row per product with only the thumbnail url
+    //  only the paginated listing (ProductService.getProductPage) reads cards from postgres,
+    //  every other card list (home sections, recommendations, browse) comes from the catalog snapshot
+    String PRODUCT_CARD = "new com.ecommerce.dto.intermediate.ProductCardRow(" +
+            "p.id, p.title, p.shortDescription, p.sellingPrice, p.stock, " +
+            "(SELECT MIN(i.url) FROM ProductImageModel i WHERE i.product = p AND i.thumbnail = true), " +
+            "p.createdAt)";
+
+    //  keyset pagination for public listing, backed by (created_at, id) and (selling_price, id) indexes
+    @Query("SELECT " + PRODUCT_CARD + " FROM ProductModel p ORDER BY p.createdAt DESC, p.id DESC")
+    List<ProductCardRow> findCardPageByNewest(Pageable pageable);
+
+    @Query("SELECT " + PRODUCT_CARD + " FROM ProductModel p WHERE (p.createdAt, p.id) < (:createdAt, :id) ORDER BY p.createdAt DESC, p.id DESC")
+    List<ProductCardRow> findCardPageByNewestAfter(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+
+    @Query("SELECT " + PRODUCT_CARD + " FROM ProductModel p ORDER BY p.sellingPrice ASC, p.id ASC")
+    List<ProductCardRow> findCardPageByPriceAsc(Pageable pageable);
+
+    @Query("SELECT " + PRODUCT_CARD + " FROM ProductModel p WHERE (p.sellingPrice, p.id) > (:price, :id) ORDER BY p.sellingPrice ASC, p.id ASC")
+    List<ProductCardRow> findCardPageByPriceAscAfter(@Param("price") BigDecimal price, @Param("id") Long id, Pageable pageable);
+
+    @Query("SELECT " + PRODUCT_CARD + " FROM ProductModel p ORDER BY p.sellingPrice DESC, p.id DESC")
+    List<ProductCardRow> findCardPageByPriceDesc(Pageable pageable);
+
+    @Query("SELECT " + PRODUCT_CARD + " FROM ProductModel p WHERE (p.sellingPrice, p.id) < (:price, :id) ORDER BY p.sellingPrice DESC, p.id DESC")
+    List<ProductCardRow> findCardPageByPriceDescAfter(@Param("price") BigDecimal price, @Param("id") Long id, Pageable pageable);
+
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("SELECT p FROM ProductModel p WHERE p.id = :id")
     Optional<ProductModel> findByIdForUpdate(@Param("id") Long id);
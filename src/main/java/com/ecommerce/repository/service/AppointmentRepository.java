@@ -18,13 +18,13 @@ import java.util.Optional;
 @Repository
 public interface AppointmentRepository extends JpaRepository<Appointment, Long> {
 
-        // 1. Fetch appointments for a list of staff members (for the optimized loop)
-        // This uses your custom @Query to filter by date and multiple staff IDs
+        // 1. Fetch appointments of a list of staff members over a date range (for the slot engine)
         @Query("SELECT a FROM Appointment a WHERE a.staff.id IN :staffIds " +
-                        "AND a.appointmentDate = :date AND a.status != 'CANCELLED'")
-        List<Appointment> findAllByStaffIdInAndBookingDate(
+                        "AND a.appointmentDate BETWEEN :from AND :to AND a.status != 'CANCELLED'")
+        List<Appointment> findAllByStaffIdInAndBookingDateBetween(
                         @Param("staffIds") List<Long> staffIds,
-                        @Param("date") LocalDate date);
+                        @Param("from") LocalDate from,
+                        @Param("to") LocalDate to);
 
         // User's appointments
         @EntityGraph("Appointment.customer.staff.user.service.payment")
@@ -42,8 +42,8 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
         boolean existsOverlappingAppointment(
                         @Param("staffId") Long staffId,
                         @Param("date") LocalDate date,
-                        @Param("start") java.time.LocalTime start,
-                        @Param("end") java.time.LocalTime end);
+                        @Param("start") LocalTime start,
+                        @Param("end") LocalTime end);
 
         // All appointments for admin (with pagination support via Pageable)
         @EntityGraph("Appointment.customer.staff.service.payment")
@@ -36,9 +36,10 @@ public interface StaffLeaveRepository extends JpaRepository<StaffLeave, Long> {
             @Param("today") LocalDate today);
 
 
-    @Query("SELECT l FROM StaffLeave l WHERE l.staff.id IN :staffIds AND l.leaveDate = :leaveDate")
-    List<StaffLeave> findAllByStaffIdInAndLeaveDate(
+    @Query("SELECT l FROM StaffLeave l WHERE l.staff.id IN :staffIds AND l.leaveDate BETWEEN :from AND :to")
+    List<StaffLeave> findAllByStaffIdInAndLeaveDateBetween(
             @Param("staffIds") List<Long> staffIds,
-            @Param("leaveDate") LocalDate leaveDate);
+            @Param("from") LocalDate from,
+            @Param("to") LocalDate to);
 
 }
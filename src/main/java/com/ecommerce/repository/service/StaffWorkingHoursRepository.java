@@ -7,7 +7,6 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.time.DayOfWeek;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,8 +22,7 @@ public interface StaffWorkingHoursRepository extends JpaRepository<StaffWorkingH
     void deleteByStaffId(@Param("staffId") Long staffId);
 
 
-    @Query("SELECT s FROM StaffWorkingHours s WHERE s.staff.id IN :staffIds AND s.dayOfWeek = :dayOfWeek")
-    List<StaffWorkingHours> findAllByStaffIdInAndDayOfWeek(
-            @Param("staffIds") List<Long> staffIds,
-            @Param("dayOfWeek") DayOfWeek dayOfWeek);
+    // every day of the week of a list of staff members
+    @Query("SELECT s FROM StaffWorkingHours s WHERE s.staff.id IN :staffIds")
+    List<StaffWorkingHours> findAllByStaffIdIn(@Param("staffIds") List<Long> staffIds);
 }
@@ -21,6 +21,7 @@ import com.ecommerce.model.user.UserModel;
 import com.ecommerce.rabbitmq.producer.NotificationProducer;
 import com.ecommerce.repository.order.OrderRepository;
 import com.ecommerce.repository.product.ProductRepository;
+import com.ecommerce.service.product.CatalogCache;
 import com.ecommerce.utils.EventHelper;
 import com.ecommerce.utils.HelperClass;
 import lombok.RequiredArgsConstructor;
@@ -48,6 +49,7 @@ public class AdminOrderService {
     private final AddressMapper addressMapper;
 
     private final NotificationProducer notificationProducer;
+    private final CatalogCache catalogCache;
 
     @Transactional
     public String sellProducts(List<SellProductRequests> requests, UserModel admin) {
@@ -88,6 +90,7 @@ public class AdminOrderService {
         order.setUser(admin);
 
         orderRepository.save(order);
+        catalogCache.refreshProducts(requests.stream().map(SellProductRequests::productId).toList());
         notificationProducer.send("notify.user", EventHelper.createEventForInstorePurchase(admin));
         return "Transaction successful";
     }
@@ -13,6 +13,7 @@ import com.ecommerce.repository.product.CategoryRepository;
 import com.ecommerce.repository.product.ProductRepository;
 import com.ecommerce.repository.product.TagRepository;
 import com.ecommerce.service.image.ImageStorageService;
+import com.ecommerce.service.product.CatalogCache;
 import com.ecommerce.utils.HelperClass;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -42,6 +43,7 @@ public class AdminProductService {
     private final ProductImageMapper productImageMapper;
 
     private final ImageStorageService storageService;
+    private final CatalogCache catalogCache;
 
     @Transactional
     public BrandResponse addBrand(BrandRequest brandRequest, MultipartFile logo) {
@@ -57,7 +59,9 @@ public class AdminProductService {
         }
         brandModel.setLogoUrl(url);
 
-        return brandMapper.mapEntityToBrandResponse(brandRepository.save(brandModel));
+        BrandModel savedBrand = brandRepository.save(brandModel);
+        catalogCache.refreshBrand(savedBrand);
+        return brandMapper.mapEntityToBrandResponse(savedBrand);
     }
 
     @Transactional
@@ -76,7 +80,9 @@ public class AdminProductService {
             throw new ApplicationException("Failed to upload category image to cloud", "STORAGE_ERROR", HttpStatus.INTERNAL_SERVER_ERROR);
         }
         categoryModel.setImageUrl(url);
-        return categoryMapper.mapEntityToCategoryResponse(categoryRepository.save(categoryModel));
+        CategoryModel savedCategory = categoryRepository.save(categoryModel);
+        catalogCache.refreshCategory(savedCategory);
+        return categoryMapper.mapEntityToCategoryResponse(savedCategory);
     }
 
     @Transactional
@@ -87,7 +93,9 @@ public class AdminProductService {
             throw new ApplicationException("Tag already exists!", "ALREADY_EXISTS", HttpStatus.CONFLICT);
         }
         TagModel newTagModel = new TagModel(request.name(), incomingSlug);
-        return tagMapper.mapEntityToTagResponse(tagRepository.save(newTagModel));
+        TagModel savedTag = tagRepository.save(newTagModel);
+        catalogCache.refreshTag(savedTag);
+        return tagMapper.mapEntityToTagResponse(savedTag);
     }
 
     @Transactional
@@ -145,6 +153,7 @@ public class AdminProductService {
         imageModels.forEach(product::addImage);
         // 6. Save everything (cascade handles images + tags)
         ProductModel savedProduct = productRepository.save(product);
+        catalogCache.refreshProduct(savedProduct.getId());
 
         return getAdminDetailOfProduct(savedProduct.getId());
     }
@@ -168,7 +177,8 @@ public class AdminProductService {
                 product.getStock(),
                 product.getSizeMl(),
                 product.getTags().stream().map(tagMapper::mapEntityToTagResponse).toList(),
-                product.getImages().stream().map(productImageMapper::mapEntityToProductImageResponse).toList()
+                product.getImages().stream().map(productImageMapper::mapEntityToProductImageResponse).toList(),
+                List.of()
         );
 
         return new SingleProductWithCostPriceResponse(productResponse, product.getCostPrice());
@@ -181,6 +191,7 @@ public class AdminProductService {
                         new ApplicationException("Product not found!", "PRODUCT_NOT_FOUND", HttpStatus.NOT_FOUND));
         productModel.setSellingPrice(price);
         productRepository.save(productModel);
+        catalogCache.refreshProduct(productId);
     }
 
     @Transactional
@@ -192,6 +203,7 @@ public class AdminProductService {
         Integer newStock = productModel.getStock()+quantity;
         productModel.setStock(newStock);
         productRepository.save(productModel);
+        catalogCache.refreshProduct(productId);
     }
 
     @Transactional
@@ -209,6 +221,7 @@ public class AdminProductService {
             }
         });
         productModel.addTags(tags);
+        catalogCache.refreshProduct(productId);
     }
 
     @Transactional
@@ -226,6 +239,7 @@ public class AdminProductService {
             }
         });
         tags.forEach(productModel::removeTag);
+        catalogCache.refreshProduct(productId);
     }
 
     public void updateShortDescription(Long productId, String shortDescription) {
@@ -234,6 +248,7 @@ public class AdminProductService {
         product.setShortDescription(shortDescription);
         System.out.println("shortDESC: " +shortDescription);
         productRepository.save(product);
+        catalogCache.refreshProduct(productId);
     }
 
     public void updateLongDescription(Long productId, String longDescription) {
@@ -241,6 +256,7 @@ public class AdminProductService {
                 .orElseThrow(()->new ApplicationException("Product not found!", "PRODUCT_NOT_FOUND", HttpStatus.NOT_FOUND));
         product.setDescription(longDescription);
         productRepository.save(product);
+        catalogCache.refreshProduct(productId);
     }
 
 
@@ -1,15 +1,25 @@
 package com.ecommerce.service.admin;
 
 import com.ecommerce.dto.response.report.SalesReportResponse;
+import com.ecommerce.dto.response.report.SimilarUserRecallReportResponse;
+import com.ecommerce.dto.response.report.SimilarityBatchReportResponse;
+import com.ecommerce.dto.response.report.SimilaritySchedulerMetricsResponse;
 import com.ecommerce.dto.response.report.StaffPerformanceReportResponse;
 import com.ecommerce.dto.response.report.TopProductReportResponse;
 import com.ecommerce.dto.response.report.TopServiceReportResponse;
+import com.ecommerce.dto.response.report.UserVectorReportResponse;
+import com.ecommerce.exception.ApplicationException;
 import com.ecommerce.model.order.OrderModel;
 import com.ecommerce.model.order.OrderStatus;
+import com.ecommerce.redis.RedisService;
 import com.ecommerce.repository.order.OrderRepository;
 import com.ecommerce.repository.payment.PaymentRepository;
 import com.ecommerce.repository.service.AppointmentRepository;
+import com.ecommerce.service.recommendation.SimilarUserBatchJob;
+import com.ecommerce.service.recommendation.SimilarUserUpdater;
+import com.ecommerce.service.recommendation.SimilarityRecomputeScheduler;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -24,6 +34,10 @@ public class AdminReportService {
     private final OrderRepository orderRepository;
     private final AppointmentRepository appointmentRepository;
     private final PaymentRepository paymentRepository;
+    private final SimilarUserUpdater similarUserUpdater;
+    private final SimilarityRecomputeScheduler similarityRecomputeScheduler;
+    private final SimilarUserBatchJob similarUserBatchJob;
+    private final RedisService redisService;
 
     public SalesReportResponse getSalesData(String period) {
         List<String> labels = new ArrayList<>();
@@ -92,4 +106,56 @@ public class AdminReportService {
         return Map.of("products", orderRepository.sumAmountByStatusIn(List.of(OrderStatus.DELIVERED, OrderStatus.INSTORE_COMPLETED)),
                 "services", appointmentRepository.sumTotalAmount());
     }
+
+//    recall of the approximate similar user search against the exact one, with latency of both
+    public SimilarUserRecallReportResponse getSimilarUserRecall(int sample, int k) {
+        return similarUserUpdater.recallReport(sample, k);
+    }
+
+//    dirty users waiting, recomputes done and saved by debouncing, lag between activity and recompute
+    public SimilaritySchedulerMetricsResponse getSimilaritySchedulerMetrics() {
+        return similarityRecomputeScheduler.metrics();
+    }
+
+//    size and throughput of the last full similar user rebuild
+    public SimilarityBatchReportResponse getSimilarityBatchReport() {
+        SimilarityBatchReportResponse report = similarUserBatchJob.lastReport();
+        if (report == null)
+            throw new ApplicationException("Similar user rebuild has not run yet", "NOT_FOUND", HttpStatus.NOT_FOUND);
+        return report;
+    }
+
+//    size of the decayed, capped user vectors and what pruning saved
+//    bytes come from MEMORY USAGE on the first sampled vectors, savings are extrapolated per pruned product
+    public UserVectorReportResponse getUserVectorReport(int sample) {
+        LongSummaryStatistics sizes = new LongSummaryStatistics();
+        LongSummaryStatistics sampledSizes = new LongSummaryStatistics();
+        LongSummaryStatistics sampledBytes = new LongSummaryStatistics();
+        redisService.forEachUserVector(500, (userId, hash) -> {
+            long size = hash.keySet().stream().filter(k -> !RedisService.VECTOR_TIME_FIELD.equals(k)).count();
+            sizes.accept(size);
+            if (sampledBytes.getCount() >= sample) return;
+            Long bytes = redisService.memoryUsage("user_vector:" + userId);
+            if (bytes != null) {
+                sampledBytes.accept(bytes);
+                sampledSizes.accept(size);
+            }
+        });
+
+        long pruned = redisService.getPrunedVectorProducts();
+        double bytesPerProduct = sampledSizes.getSum() == 0 ? 0 : (double) sampledBytes.getSum() / sampledSizes.getSum();
+        return new UserVectorReportResponse(
+                RedisService.VECTOR_HALF_LIFE_DAYS,
+                RedisService.VECTOR_MAX_PRODUCTS,
+                sizes.getCount(),
+                sizes.getSum(),
+                pruned,
+                sizes.getAverage(),
+                (int) Math.max(sizes.getMax(), 0),
+                sampledBytes.getAverage(),
+                Math.round(pruned * bytesPerProduct),
+                // a cosine is a merge join, so its cost follows the vector length
+                sizes.getSum() == 0 ? 1.0 : (double) (sizes.getSum() + pruned) / sizes.getSum()
+        );
+    }
 }
@@ -1,12 +1,13 @@
 package com.ecommerce.service.appointment;
 
 import com.ecommerce.dto.intermediate.appointment.AppointmentDetailForEvent;
-import com.ecommerce.dto.intermediate.appointment.TimeInterval;
+import com.ecommerce.dto.intermediate.appointment.StaffSlot;
 import com.ecommerce.dto.intermediate.appointment.TempAppointmentDetails;
 import com.ecommerce.dto.request.service.BookingRequest;
 import com.ecommerce.dto.response.appointment.AppointmentDetailAdminResponse;
 import com.ecommerce.dto.response.appointment.AppointmentDetailResponse;
 import com.ecommerce.dto.response.appointment.AppointmentResponse;
+import com.ecommerce.dto.response.appointment.AvailabilityDayResponse;
 import com.ecommerce.dto.response.appointment.AvailableTimeResponse;
 import com.ecommerce.dto.response.payment.PaymentRedirectResponse;
 import com.ecommerce.dto.response.service.TimeSlotRecommendation;
@@ -15,15 +16,11 @@ import com.ecommerce.exception.ApplicationException;
 import com.ecommerce.mapper.appointment.AppointmentMapper;
 import com.ecommerce.model.payment.PaymentMethod;
 import com.ecommerce.model.service.*;
-import com.ecommerce.model.user.Staff;
 import com.ecommerce.model.user.UserModel;
 import com.ecommerce.rabbitmq.dto.NotificationEvent;
 import com.ecommerce.rabbitmq.producer.NotificationProducer;
 import com.ecommerce.repository.service.AppointmentRepository;
 import com.ecommerce.repository.service.ServiceRepository;
-import com.ecommerce.repository.service.StaffLeaveRepository;
-import com.ecommerce.repository.service.StaffWorkingHoursRepository;
-import com.ecommerce.repository.user.StaffRepository;
 import com.ecommerce.service.payment.PaymentService;
 import com.ecommerce.service.recommendation.AppointmentRecommendationService;
 import com.ecommerce.utils.EventHelper;
@@ -37,9 +34,7 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -48,9 +43,9 @@ public class AppointmentBookingService {
 
     private final AppointmentRepository appointmentRepository;
     private final ServiceRepository serviceRepository;
-    private final StaffRepository staffRepository;
-    private final StaffLeaveRepository staffLeaveRepository;
-    private final StaffWorkingHoursRepository staffWorkingHoursRepository;
+    private final SlotEngine slotEngine;
+    private final OccupancyCache occupancyCache;
+    private final SlotHolds slotHolds;
     private final AppointmentRecommendationService recommendationService;
     private final PaymentService paymentService;
     private final NotificationProducer notificationProducer;
@@ -58,117 +53,38 @@ public class AppointmentBookingService {
     private final AppointmentMapper appointmentMapper;
 
     private static final BigDecimal ADVANCE_PERCENTAGE = new BigDecimal("0.10");
-    private static final String STAFF_NOT_FOUND = "Staff not found";
-    private static final String STAFF_NOT_FOUND_CODE = "STAFF_NOT_FOUND";
     private static final String SERVICE_NOT_FOUND = "Service not found";
     private static final String SERVICE_NOT_FOUND_CODE = "SERVICE_NOT_FOUND";
 
     // ==================== User Booking Methods ====================
     public List<AvailableTimeResponse> getAvailableTime(Long serviceId, LocalDate bookingDate, Long staffId) {
-        // 1. Validate Service
-        ServiceModel service = serviceRepository.findById(serviceId)
-                .filter(ServiceModel::isActive)
-                .orElseThrow(() -> new ApplicationException(SERVICE_NOT_FOUND, SERVICE_NOT_FOUND_CODE, HttpStatus.NOT_FOUND));
-
-        int duration = service.getDurationMinutes();
-
-        // 2. Identify Target Staff
-        List<Staff> targetStaff = (staffId != null && staffId != 0)
-                ? List.of(staffRepository.findById(staffId).orElseThrow(() -> new ApplicationException(STAFF_NOT_FOUND, STAFF_NOT_FOUND_CODE, HttpStatus.NOT_FOUND)))
-                : staffRepository.findByServiceId(serviceId);
-
-        if (targetStaff.isEmpty()) return List.of();
-
-        List<Long> staffIds = targetStaff.stream().map(Staff::getId).toList();
-
-        // 3. Bulk Fetch Data (Prevention of N+1)
-        Map<Long, List<Appointment>> appointmentsMap = appointmentRepository
-                .findAllByStaffIdInAndBookingDate(staffIds, bookingDate)
-                .stream().collect(Collectors.groupingBy(a -> a.getStaff().getId()));
-
-        Map<Long, StaffWorkingHours> workingHoursMap = staffWorkingHoursRepository
-                .findAllByStaffIdInAndDayOfWeek(staffIds, bookingDate.getDayOfWeek())
-                .stream().collect(Collectors.toMap(wh -> wh.getStaff().getId(), wh -> wh));
-
-        Map<Long, StaffLeave> leavesMap = staffLeaveRepository
-                .findAllByStaffIdInAndLeaveDate(staffIds, bookingDate)
-                .stream().collect(Collectors.toMap(l -> l.getStaff().getId(), l -> l));
-
-        // 4. Generate & Filter Slots
-        // TreeSet with Comparator ensures slots are unique and sorted chronologically
-        Set<AvailableTimeResponse> uniqueSlots = new TreeSet<>(Comparator.comparing(AvailableTimeResponse::startTime));
-
-        // If booking for today, only show slots starting 30 mins from now
-        LocalTime nowBuffer = (bookingDate.equals(LocalDate.now())) ? LocalTime.now().plusMinutes(30) : null;
-
-        for (Staff staff : targetStaff) {
-            StaffWorkingHours wh = workingHoursMap.get(staff.getId());
-            if (wh == null || !wh.isWorkingDay()) continue;
-
-            // Prepare "Blocked" intervals (Existing Appointments + Partial Leaves)
-            List<TimeInterval> blockedIntervals = new ArrayList<>();
-
-            // Add existing appointments to blocked list
-            appointmentsMap.getOrDefault(staff.getId(), List.of()).forEach(a ->
-                    blockedIntervals.add(new TimeInterval(a.getStartTime(), a.getEndTime()))
-            );
-
-            // --- Handle Partial vs Full Leave ---
-            StaffLeave leave = leavesMap.get(staff.getId());
-            if (leave != null) {
-                if (leave.getStartTime() == null || leave.getEndTime() == null) {
-                    // If either is null, we treat it as a Full Day Leave for this staff
-                    continue;
-                } else {
-                    // Partial leave: Treat the leave window as a blocked appointment
-                    blockedIntervals.add(new TimeInterval(leave.getStartTime(), leave.getEndTime()));
-                }
-            }
-
-            LocalTime currentSlotStart = wh.getStartTime();
-
-            // Sliding window: Check if a slot of 'duration' fits before shift ends
-            while (!currentSlotStart.plusMinutes(duration).isAfter(wh.getEndTime())) {
-                LocalTime currentSlotEnd = currentSlotStart.plusMinutes(duration);
-
-                if (isSlotFree(currentSlotStart, currentSlotEnd, nowBuffer, blockedIntervals)) {
-                    uniqueSlots.add(new AvailableTimeResponse(currentSlotStart, currentSlotEnd));
-                }
-
-                // Move forward by 15-minute increments
-                currentSlotStart = currentSlotStart.plusMinutes(15);
-            }
-        }
-
-        return new ArrayList<>(uniqueSlots);
-    }
-
-    private boolean isSlotFree(LocalTime start, LocalTime end, LocalTime nowBuffer, List<TimeInterval> blockedIntervals) {
-        // 1. Check against current time (if booking is for today)
-        if (nowBuffer != null && start.isBefore(nowBuffer)) {
-            return false;
-        }
-
-        // 2. Check against all blocked intervals (Appointments or Partial Leaves)
-        for (TimeInterval blocked : blockedIntervals) {
-            if (start.isBefore(blocked.end()) && end.isAfter(blocked.start())) {
-                return false; // Collision detected
-            }
-        }
-
-        return true; // Slot is available
+        return toAvailableTimes(slotEngine.findFreeSlots(serviceId, staffId, bookingDate));
     }
 
+//    one slot computation for both lists
     public Map<String, List<?>> getRecommendationAndTime(Long userId, Long serviceId, LocalDate bookingDate, Long staffId) {
-        List<TimeSlotRecommendation> recommendations = getRecommendations(userId, serviceId, staffId, bookingDate);
-        List<AvailableTimeResponse> availableTimes = getAvailableTime(serviceId, bookingDate, staffId);
+        List<StaffSlot> freeSlots = slotEngine.findFreeSlots(serviceId, staffId, bookingDate);
+        List<TimeSlotRecommendation> recommendations = recommendationService.getRecommendedSlots(userId, bookingDate, freeSlots);
 
-        return Map.of("AvailableTime", availableTimes,
+        return Map.of("AvailableTime", toAvailableTimes(freeSlots),
                 "RecommendedTime", recommendations);
     }
 
-    public List<TimeSlotRecommendation> getRecommendations(Long userId, Long serviceId, Long staffId, LocalDate bookingDate) {
-        return recommendationService.getRecommendedSlots(userId, serviceId, staffId, bookingDate);
+//    availability calendar of the next days, the whole range costs one query per table
+    public List<AvailabilityDayResponse> getAvailability(Long serviceId, Long staffId, LocalDate from, int days) {
+        List<AvailabilityDayResponse> calendar = new ArrayList<>(days);
+        slotEngine.findFreeSlots(serviceId, staffId, from, from.plusDays(days - 1L)).forEach((date, freeSlots) -> {
+            List<AvailableTimeResponse> slots = toAvailableTimes(freeSlots);
+            calendar.add(new AvailabilityDayResponse(date, !slots.isEmpty(), slots));
+        });
+        return calendar;
+    }
+
+    private List<AvailableTimeResponse> toAvailableTimes(List<StaffSlot> freeSlots) {
+        // TreeSet with Comparator ensures slots are unique and sorted chronologically
+        Set<AvailableTimeResponse> uniqueSlots = new TreeSet<>(Comparator.comparing(AvailableTimeResponse::startTime));
+        freeSlots.forEach(slot -> uniqueSlots.add(new AvailableTimeResponse(slot.startTime(), slot.endTime())));
+        return new ArrayList<>(uniqueSlots);
     }
 
     @Transactional
@@ -184,19 +100,16 @@ public class AppointmentBookingService {
             throw new ApplicationException("Appointments must be booked at least 15 minutes in advance", "INVALID_TIME", HttpStatus.BAD_REQUEST);
         }
 
-        // 3. Resolve Staff
-        Staff assignedStaff;
-        if (request.staffId() != null && request.staffId() != 0) {
-            // User picked a specific staff - validate they are free
-            assignedStaff = staffRepository.findById(request.staffId())
-                    .orElseThrow(() -> new ApplicationException(STAFF_NOT_FOUND, STAFF_NOT_FOUND_CODE, HttpStatus.NOT_FOUND));
-
-            if (appointmentRepository.existsOverlappingAppointment(assignedStaff.getId(), request.bookingDate(), request.startTime(), request.endTime())) {
-                throw new ApplicationException("The selected staff is no longer available for this time slot", "STAFF_BUSY", HttpStatus.CONFLICT);
-            }
-        } else {
-            assignedStaff = findFirstAvailableStaff(request.serviceId(), request.bookingDate(), request.startTime(), request.endTime());
-        }
+        // 3. Resolve Staff: staff free at that start time (occupancy cache), the slot is held in redis until payment
+        boolean anyStaff = request.staffId() == null || request.staffId() == 0;
+        List<StaffSlot> candidates = slotEngine.findFreeSlots(service.getId(), request.staffId(), request.bookingDate()).stream()
+                .filter(slot -> slot.startTime().equals(request.startTime()))
+                .toList();
+        String transactionId = "APT_" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+        StaffSlot heldSlot = slotHolds.hold(candidates, request.bookingDate(), transactionId)
+                .orElseThrow(() -> anyStaff
+                        ? new ApplicationException("No staff available for this specific time slot", "NO_STAFF_AVAILABLE", HttpStatus.NOT_FOUND)
+                        : new ApplicationException("The selected staff is no longer available for this time slot", "STAFF_BUSY", HttpStatus.CONFLICT));
 
         // 4. Calculate amounts
         BigDecimal totalAmount = service.getPrice();
@@ -204,17 +117,14 @@ public class AppointmentBookingService {
         BigDecimal advanceAmount = totalAmount.multiply(ADVANCE_PERCENTAGE)
                 .setScale(2, RoundingMode.HALF_UP);
 
-        // 5. Generate unique transaction tracking
-        String transactionId = "APT_" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-
-        // 6. Store in Redis (Setting TTL to e.g., 15 minutes)
+        // 5. Store in Redis (same TTL as the slot hold)
         TempAppointmentDetails tempDetails = TempAppointmentDetails.builder()
                 .userId(userId)
                 .serviceId(service.getId())
-                .staffId(assignedStaff.getId())
+                .staffId(heldSlot.staff().getId())
                 .appointmentDate(request.bookingDate())
-                .startTime(request.startTime())
-                .endTime(request.endTime())
+                .startTime(heldSlot.startTime())
+                .endTime(heldSlot.endTime())
                 .paymentMethod(request.paymentMethod())
                 .specialNotes(request.specialNotes())
                 .totalAmount(totalAmount)
@@ -223,34 +133,30 @@ public class AppointmentBookingService {
                 .createdAt(LocalDateTime.now())
                 .build();
 
-        if(request.paymentMethod() == PaymentMethod.KHALTI){
-            String url = paymentService.payWithKhalti(tempDetails);
-            return new PaymentRedirectResponse(
-                    PaymentMethod.KHALTI,
-                    url,
-                    null
-            );
-        } else if (request.paymentMethod() == PaymentMethod.ESEWA) {
-            Esewa esewa= paymentService.payWithEsewa(tempDetails);
-            return new PaymentRedirectResponse(
-                    PaymentMethod.ESEWA,
-                    null,
-                    esewa
-            );
+        try {
+            if(request.paymentMethod() == PaymentMethod.KHALTI){
+                String url = paymentService.payWithKhalti(tempDetails);
+                return new PaymentRedirectResponse(
+                        PaymentMethod.KHALTI,
+                        url,
+                        null
+                );
+            } else if (request.paymentMethod() == PaymentMethod.ESEWA) {
+                Esewa esewa= paymentService.payWithEsewa(tempDetails);
+                return new PaymentRedirectResponse(
+                        PaymentMethod.ESEWA,
+                        null,
+                        esewa
+                );
+            }
+        } catch (RuntimeException e) {
+            slotHolds.release(tempDetails);
+            throw e;
         }
+        slotHolds.release(tempDetails);
         return null;
     }
 
-    private Staff findFirstAvailableStaff(Long serviceId, LocalDate date, LocalTime start, LocalTime end) {
-        List<Staff> eligibleStaff = staffRepository.findByServiceId(serviceId);
-
-        return eligibleStaff.stream()
-                .filter(s -> !appointmentRepository.existsOverlappingAppointment(s.getId(), date, start, end))
-                // Add extra filter for Working Hours/Leave if not already handled by frontend selection
-                .findFirst()
-                .orElseThrow(() -> new ApplicationException("No staff available for this specific time slot", "NO_STAFF_AVAILABLE", HttpStatus.NOT_FOUND));
-    }
-
     @Transactional
     public void cancelAppointment(Long appointmentId, UserModel user) {
         Appointment appointment = appointmentRepository.findWithDetailsById(appointmentId)
@@ -277,6 +183,7 @@ public class AppointmentBookingService {
 
         appointment.setStatus(AppointmentStatus.CANCELLED);
         appointmentRepository.save(appointment);
+        occupancyCache.evictDay(appointment.getStaff().getId(), appointment.getAppointmentDate());
         AppointmentDetailForEvent detail = AppointmentDetailForEvent.builder()
                 .userId(user.getId())
                 .user(user.getUsername())
@@ -337,6 +244,7 @@ public class AppointmentBookingService {
                 .orElseThrow(() -> new ApplicationException("Appointment not found", "NOT_FOUND", HttpStatus.NOT_FOUND));
 
         appointment.setStatus(status);
+        occupancyCache.evictDay(appointment.getStaff().getId(), appointment.getAppointmentDate());
         if(status == AppointmentStatus.COMPLETED){
             appointment.setTotalAmount(appointment.getService().getPrice());
         }
@@ -1,6 +1,7 @@
 package com.ecommerce.service.appointment;
 
 import com.ecommerce.dto.intermediate.appointment.AppointmentDetailForEvent;
+import com.ecommerce.dto.intermediate.appointment.StaffSlot;
 import com.ecommerce.dto.intermediate.appointment.TempAppointmentDetails;
 import com.ecommerce.exception.ApplicationException;
 import com.ecommerce.model.payment.PaymentModel;
@@ -27,6 +28,8 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.List;
+import java.util.Optional;
 
 @Slf4j
 @Service
@@ -41,6 +44,9 @@ public class AppointmentPersistService {
     private final AppointmentRepository appointmentRepository;
     private final NotificationProducer notificationProducer;
     private final UserAppointmentHistoryUpdater userAppointmentHistoryUpdater;
+    private final OccupancyCache occupancyCache;
+    private final SlotHolds slotHolds;
+    private final SlotEngine slotEngine;
 
     @Transactional
     public void handleEsewaAppointmentDetails(boolean success, PaymentModel payment){
@@ -64,6 +70,8 @@ public class AppointmentPersistService {
             saveAppointment(payment, appointmentDetails);
         }
         if(payment != null){
+            // a failed payment frees its slot right away, a paid one keeps the hold until it expires
+            if(!success) slotHolds.release(redisService.getTempAppointment(payment.getTransactionId()));
             redisService.deleteTempAppointment(payment.getTransactionId());
         }
 
@@ -89,17 +97,21 @@ public class AppointmentPersistService {
             }
             saveAppointment(payment, appointmentDetails);
         }
+        if(!success) slotHolds.release(redisService.getTempAppointment(purchaseId));
         redisService.deleteTempAppointment(purchaseId);
     }
 
     private void saveAppointment(PaymentModel payment, TempAppointmentDetails appointmentDetails) {
         UserModel user = userRepository.findById(appointmentDetails.getUserId())
                 .orElseThrow(()-> new ApplicationException("User not found!", "USER_NOT_FOUND", HttpStatus.NOT_FOUND));
-        Staff staff = staffRepository.findWithDetailsById(appointmentDetails.getStaffId())
-                .orElseThrow(()-> new ApplicationException("Staff not found!", "STAFF_NOT_FOUND", HttpStatus.NOT_FOUND));
         ServiceModel service = serviceRepository.findById(appointmentDetails.getServiceId())
                 .orElseThrow(()-> new ApplicationException("Service not found!", "SERVICE_NOT_FOUND", HttpStatus.NOT_FOUND));
         payment.setUser(user);
+        Staff staff = confirmStaff(appointmentDetails).orElse(null);
+        if (staff == null) {
+            savePaymentForRefund(payment, user, service, appointmentDetails);
+            return;
+        }
 
         Appointment appointment = Appointment.builder()
                 .customer(user)
@@ -116,6 +128,7 @@ public class AppointmentPersistService {
         appointment.addPayment(payment);
         staff.addAppointment(appointment);
         appointmentRepository.save(appointment);
+        occupancyCache.evictDay(staff.getId(), appointment.getAppointmentDate());
 
 //        updating history
         userAppointmentHistoryUpdater.updateUserAppointmentHistoryAsync(appointment.getCustomer().getId(), appointment.getStartTime());
@@ -134,4 +147,52 @@ public class AppointmentPersistService {
         notificationProducer.send("notify.user", event);
     }
 
+//    the redis hold is only the fast path, a hold can be gone (redis restart, payment slower than the hold),
+//    so the held staff is checked against the appointments table once more inside this transaction;
+//    if someone got there first, another staff free at the same time takes the appointment, empty if nobody is left
+    private Optional<Staff> confirmStaff(TempAppointmentDetails details) {
+        if (!overlapsAppointment(details.getStaffId(), details)) {
+            return Optional.of(staffRepository.findWithDetailsById(details.getStaffId())
+                    .orElseThrow(()-> new ApplicationException("Staff not found!", "STAFF_NOT_FOUND", HttpStatus.NOT_FOUND)));
+        }
+        log.warn("Staff {} already booked for {} {}, picking another staff", details.getStaffId(),
+                details.getAppointmentDate(), details.getStartTime());
+
+        List<StaffSlot> others = slotEngine.findFreeSlots(details.getServiceId(), null, details.getAppointmentDate()).stream()
+                .filter(slot -> slot.startTime().equals(details.getStartTime()))
+                .filter(slot -> !slot.staff().getId().equals(details.getStaffId()))
+                .filter(slot -> !overlapsAppointment(slot.staff().getId(), details))
+                .toList();
+        return slotHolds.hold(others, details.getAppointmentDate(), details.getTransactionId())
+                .map(slot -> staffRepository.findWithDetailsById(slot.staff().getId())
+                        .orElseThrow(()-> new ApplicationException("Staff not found!", "STAFF_NOT_FOUND", HttpStatus.NOT_FOUND)));
+    }
+
+//    the customer is already charged when the slot turns out to be taken, throwing here would roll back the payment,
+//    so the payment is kept without an appointment, marked by its error code for the admin to refund or reschedule
+    private void savePaymentForRefund(PaymentModel payment, UserModel user, ServiceModel service, TempAppointmentDetails details) {
+        log.error("No staff left for paid booking {} on {} {}, payment kept for refund", details.getTransactionId(),
+                details.getAppointmentDate(), details.getStartTime());
+        payment.setErrorCode("STAFF_BUSY");
+        paymentRepository.save(payment);
+
+        Staff staff = staffRepository.findWithDetailsById(details.getStaffId())
+                .orElseThrow(()-> new ApplicationException("Staff not found!", "STAFF_NOT_FOUND", HttpStatus.NOT_FOUND));
+        AppointmentDetailForEvent detail = AppointmentDetailForEvent.builder()
+                .userId(user.getId())
+                .user(user.getUsername())
+                .email(user.getEmail())
+                .staffId(staff.getId())
+                .staffName(staff.getUser().getUsername())
+                .serviceName(service.getName())
+                .appointmentDate(details.getAppointmentDate())
+                .build();
+        notificationProducer.send("notify.user", EventHelper.createEventForAppointmentRefund(detail));
+    }
+
+    private boolean overlapsAppointment(Long staffId, TempAppointmentDetails details) {
+        return appointmentRepository.existsOverlappingAppointment(staffId, details.getAppointmentDate(),
+                details.getStartTime(), details.getEndTime());
+    }
+
 }
@@ -0,0 +1,109 @@
+package com.ecommerce.service.appointment;
+
+import com.ecommerce.dto.intermediate.appointment.TimeInterval;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// free time of one staff day as a 96 bit map, bit q = the quarter hour starting q * 15 minutes after midnight
+// working hours set bits, appointments and partial leaves clear every quarter they touch,
+// so a window of n quarters is free where the map and-ed with itself shifted by 1 .. n - 1 still has a bit
+// times off the quarter grid are rounded the safe way: a slot may be hidden, never double booked
+final class DayOccupancy {
+
+    static final int SLOT_MINUTES = 15;
+    static final int QUARTERS = 24 * 60 / SLOT_MINUTES;
+
+    static final DayOccupancy CLOSED = new DayOccupancy(0L, 0L);
+
+    // quarters 0 - 63 and 64 - 95
+    private final long low;
+    private final long high;
+
+    private DayOccupancy(long low, long high) {
+        this.low = low;
+        this.high = high;
+    }
+
+    static DayOccupancy of(LocalTime open, LocalTime close, List<TimeInterval> blocked) {
+        DayOccupancy free = CLOSED.with(ceilQuarter(open), floorQuarter(close), true);
+        for (TimeInterval interval : blocked) {
+            free = free.with(floorQuarter(interval.start()), ceilQuarter(interval.end()), false);
+        }
+        return free;
+    }
+
+//    raw words, used by OccupancyCache to store the map
+    static DayOccupancy ofBits(long low, long high) {
+        return low == 0 && high == 0 ? CLOSED : new DayOccupancy(low, high);
+    }
+
+    long low() {
+        return low;
+    }
+
+    long high() {
+        return high;
+    }
+
+//    start times of every free window of the duration, earliest first, none before notBefore (may be null)
+    List<LocalTime> freeStarts(int durationMinutes, LocalTime notBefore) {
+        int quarters = Math.max(1, (durationMinutes + SLOT_MINUTES - 1) / SLOT_MINUTES);
+        long l = low, h = high;
+
+        // doubling: after each step bit q is set iff quarters q .. q + covered - 1 are all free
+        int covered = 1;
+        while (covered < quarters) {
+            int step = Math.min(covered, quarters - covered);
+            long shiftedLow = step < 64 ? (l >>> step) | (h << (64 - step)) : h >>> (step - 64);
+            long shiftedHigh = step < 64 ? h >>> step : 0L;
+            l &= shiftedLow;
+            h &= shiftedHigh;
+            covered += step;
+        }
+        if (notBefore != null) {
+            DayOccupancy allowed = CLOSED.with(ceilQuarter(notBefore), QUARTERS, true);
+            l &= allowed.low;
+            h &= allowed.high;
+        }
+
+        List<LocalTime> starts = new ArrayList<>(Long.bitCount(l) + Long.bitCount(h));
+        for (; l != 0; l &= l - 1) starts.add(startOf(Long.numberOfTrailingZeros(l)));
+        for (; h != 0; h &= h - 1) starts.add(startOf(64 + Long.numberOfTrailingZeros(h)));
+        return starts;
+    }
+
+//    helpers
+    // sets (free = true) or clears the quarters [from, to)
+    private DayOccupancy with(int from, int to, boolean free) {
+        from = Math.max(0, from);
+        to = Math.min(QUARTERS, to);
+        if (from >= to) return this;
+        long maskLow = range(from, Math.min(to, 64));
+        long maskHigh = range(Math.max(from, 64) - 64, Math.max(to, 64) - 64);
+        return free
+                ? new DayOccupancy(low | maskLow, high | maskHigh)
+                : new DayOccupancy(low & ~maskLow, high & ~maskHigh);
+    }
+
+    // bits [from, to) of one word
+    private static long range(int from, int to) {
+        if (from >= to) return 0L;
+        long upTo = to == 64 ? -1L : (1L << to) - 1;
+        return upTo & (-1L << from);
+    }
+
+    private static int floorQuarter(LocalTime time) {
+        return (time.getHour() * 60 + time.getMinute()) / SLOT_MINUTES;
+    }
+
+    private static int ceilQuarter(LocalTime time) {
+        int seconds = time.toSecondOfDay();
+        return (seconds + SLOT_MINUTES * 60 - 1) / (SLOT_MINUTES * 60);
+    }
+
+    private static LocalTime startOf(int quarter) {
+        return LocalTime.of(quarter * SLOT_MINUTES / 60, quarter * SLOT_MINUTES % 60);
+    }
+}
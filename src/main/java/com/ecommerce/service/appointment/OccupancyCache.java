@@ -0,0 +1,170 @@
+package com.ecommerce.service.appointment;
+
+import com.ecommerce.redis.RedisService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// computed occupancy (free quarter bitmap + appointment count) per staff day, so booking pages skip postgres
+// lookups go near cache -> redis -> loader (SlotEngine bulk queries), and only what is missing moves down a level
+// availability of a staff day only changes with its appointments, its leave or the staff's working hours,
+// those writers evict exactly the affected days once their transaction commits
+// other instances keep their near copy for at most NEAR_TTL_MS, redis is always invalidated;
+// a stale near copy can only offer a slot that was just taken, the slot hold and the appointments table check
+// before saving (AppointmentPersistService) keep that from becoming a double booking
+// expired near entries are swept by the lookups themselves, at most once per NEAR_TTL_MS
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OccupancyCache {
+
+    static final long NEAR_TTL_MS = 30_000;
+
+    private final RedisService redisService;
+
+    private final Map<StaffDayKey, NearEntry> near = new ConcurrentHashMap<>();
+    // bumped by every eviction, a computed day is kept locally only if no eviction happened while computing it
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong nextSweep = new AtomicLong();
+
+    record StaffDay(DayOccupancy free, int appointments) {
+        static final StaffDay CLOSED = new StaffDay(DayOccupancy.CLOSED, 0);
+    }
+
+    interface Loader {
+        // must return a day for every staff id and every date in [from, to]
+        Map<Long, Map<LocalDate, StaffDay>> load(List<Long> staffIds, LocalDate from, LocalDate to);
+    }
+
+    private record StaffDayKey(Long staffId, LocalDate date) {}
+
+    private record NearEntry(StaffDay day, long expiresAt) {}
+
+//    staff id -> date -> day for every staff and every date in [from, to]
+    Map<Long, Map<LocalDate, StaffDay>> getAll(List<Long> staffIds, LocalDate from, LocalDate to, Loader loader) {
+        long evictionsBefore = evictions.get();
+        long now = System.currentTimeMillis();
+        dropExpired(now);
+        Map<Long, Map<LocalDate, StaffDay>> result = new HashMap<>();
+        Map<Long, List<LocalDate>> missing = new LinkedHashMap<>();
+
+        // 1. near cache
+        for (Long staffId : staffIds) {
+            Map<LocalDate, StaffDay> days = result.computeIfAbsent(staffId, k -> new HashMap<>());
+            for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+                NearEntry entry = near.get(new StaffDayKey(staffId, date));
+                if (entry != null && entry.expiresAt() > now) days.put(date, entry.day());
+                else missing.computeIfAbsent(staffId, k -> new ArrayList<>()).add(date);
+            }
+        }
+        if (missing.isEmpty()) return result;
+
+        // 2. redis
+        Map<Long, String> versions = new HashMap<>();
+        try {
+            redisService.getStaffOccupancies(missing.keySet()).forEach((staffId, hash) -> {
+                versions.put(staffId, Objects.toString(hash.get("v"), "0"));
+                missing.get(staffId).removeIf(date -> {
+                    Object value = hash.get(date.toString());
+                    if (value == null) return false;
+                    StaffDay day = decode(value.toString());
+                    result.get(staffId).put(date, day);
+                    keepNear(evictionsBefore, staffId, date, day);
+                    return true;
+                });
+            });
+        } catch (Exception e) {
+            log.warn("Failed to read staff occupancy from redis, computing it", e);
+        }
+        missing.values().removeIf(List::isEmpty);
+        if (missing.isEmpty()) return result;
+
+        // 3. loader, one bulk load over the smallest range covering every missing day
+        LocalDate first = missing.values().stream().map(dates -> dates.get(0)).min(Comparator.naturalOrder()).orElseThrow();
+        LocalDate last = missing.values().stream().map(dates -> dates.get(dates.size() - 1)).max(Comparator.naturalOrder()).orElseThrow();
+        Map<Long, Map<LocalDate, StaffDay>> loaded = loader.load(List.copyOf(missing.keySet()), first, last);
+
+        Map<Long, Map<LocalDate, String>> toSave = new HashMap<>();
+        missing.forEach((staffId, dates) -> dates.forEach(date -> {
+            StaffDay day = loaded.get(staffId).get(date);
+            result.get(staffId).put(date, day);
+            keepNear(evictionsBefore, staffId, date, day);
+            toSave.computeIfAbsent(staffId, k -> new HashMap<>()).put(date, encode(day));
+        }));
+        try {
+            redisService.saveStaffOccupancies(versions, toSave, LocalDate.now());
+        } catch (Exception e) {
+            log.warn("Failed to save staff occupancy to redis", e);
+        }
+        return result;
+    }
+
+//    an appointment or a leave of that day changed
+    public void evictDay(Long staffId, LocalDate date) {
+        afterCommit(() -> {
+            evictions.incrementAndGet();
+            near.remove(new StaffDayKey(staffId, date));
+            redisService.invalidateStaffOccupancy(staffId, List.of(date));
+        });
+    }
+
+//    working hours changed, every day of the staff
+    public void evictStaff(Long staffId) {
+        afterCommit(() -> {
+            evictions.incrementAndGet();
+            near.keySet().removeIf(key -> key.staffId().equals(staffId));
+            redisService.invalidateStaffOccupancy(staffId, List.of());
+        });
+    }
+
+//    helpers
+    private void dropExpired(long now) {
+        long due = nextSweep.get();
+        if (now < due || !nextSweep.compareAndSet(due, now + NEAR_TTL_MS)) return;
+        near.values().removeIf(entry -> entry.expiresAt() <= now);
+    }
+
+    private void keepNear(long evictionsBefore, Long staffId, LocalDate date, StaffDay day) {
+        if (evictions.get() != evictionsBefore) return;
+        near.put(new StaffDayKey(staffId, date), new NearEntry(day, System.currentTimeMillis() + NEAR_TTL_MS));
+    }
+
+    // "<low hex>:<high hex>:<appointments>"
+    private String encode(StaffDay day) {
+        return Long.toHexString(day.free().low()) + ":" + Long.toHexString(day.free().high()) + ":" + day.appointments();
+    }
+
+    private StaffDay decode(String value) {
+        String[] parts = value.split(":");
+        return new StaffDay(DayOccupancy.ofBits(Long.parseUnsignedLong(parts[0], 16), Long.parseUnsignedLong(parts[1], 16)),
+                Integer.parseInt(parts[2]));
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    runSafely(action);
+                }
+            });
+        } else {
+            runSafely(action);
+        }
+    }
+
+    private void runSafely(Runnable action) {
+        try {
+            action.run();
+        } catch (Exception e) {
+            log.error("Failed to evict staff occupancy", e);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.ecommerce.service.appointment;
+
+import com.ecommerce.dto.intermediate.appointment.StaffSlot;
+import com.ecommerce.dto.intermediate.appointment.TimeInterval;
+import com.ecommerce.exception.ApplicationException;
+import com.ecommerce.model.service.Appointment;
+import com.ecommerce.model.service.ServiceModel;
+import com.ecommerce.model.service.StaffLeave;
+import com.ecommerce.model.service.StaffWorkingHours;
+import com.ecommerce.model.user.Staff;
+import com.ecommerce.repository.service.AppointmentRepository;
+import com.ecommerce.repository.service.ServiceRepository;
+import com.ecommerce.repository.service.StaffLeaveRepository;
+import com.ecommerce.repository.service.StaffWorkingHoursRepository;
+import com.ecommerce.repository.user.StaffRepository;
+import com.ecommerce.service.appointment.OccupancyCache.StaffDay;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+
+// free slots of a service, for one staff member or every staff offering the service
+// staff days (appointments, working hours, leaves) are turned into quarter hour bitmaps (DayOccupancy), cached per
+// staff day in OccupancyCache, free windows are found with bit operations instead of walking the day,
+// the available times and the recommendations are both derived from the same slot list
+@Component
+@RequiredArgsConstructor
+public class SlotEngine {
+
+    private final AppointmentRepository appointmentRepository;
+    private final ServiceRepository serviceRepository;
+    private final StaffRepository staffRepository;
+    private final StaffLeaveRepository staffLeaveRepository;
+    private final StaffWorkingHoursRepository staffWorkingHoursRepository;
+    private final OccupancyCache occupancyCache;
+
+    public List<StaffSlot> findFreeSlots(Long serviceId, Long staffId, LocalDate bookingDate) {
+        return findFreeSlots(serviceId, staffId, bookingDate, bookingDate).get(bookingDate);
+    }
+
+//    date -> free slots for every date in [from, to], dates without slots map to an empty list
+    public SortedMap<LocalDate, List<StaffSlot>> findFreeSlots(Long serviceId, Long staffId, LocalDate from, LocalDate to) {
+        // 1. Validate Service
+        ServiceModel service = serviceRepository.findById(serviceId)
+                .filter(ServiceModel::isActive)
+                .orElseThrow(() -> new ApplicationException("Service not found", "SERVICE_NOT_FOUND", HttpStatus.NOT_FOUND));
+        int duration = service.getDurationMinutes();
+
+        SortedMap<LocalDate, List<StaffSlot>> slotsByDate = new TreeMap<>();
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            slotsByDate.put(date, new ArrayList<>());
+        }
+
+        // 2. Identify Target Staff
+        List<Staff> targetStaff = (staffId != null && staffId != 0)
+                ? List.of(staffRepository.findWithDetailsById(staffId).orElseThrow(() -> new ApplicationException("Staff not found", "STAFF_NOT_FOUND", HttpStatus.NOT_FOUND)))
+                : staffRepository.findByServiceId(serviceId);
+        if (targetStaff.isEmpty()) return slotsByDate;
+        List<Long> staffIds = targetStaff.stream().map(Staff::getId).toList();
+
+        // 3. One bitmap per staff day, from the occupancy cache (bulk computed on a miss)
+        LocalDate today = LocalDate.now();
+        LocalDate first = from.isBefore(today) ? today : from;
+        if (first.isAfter(to)) return slotsByDate;
+        Map<Long, Map<LocalDate, StaffDay>> days = occupancyCache.getAll(staffIds, first, to, this::computeDays);
+
+        // 4. Every window of 'duration' inside the shift that no blocked interval touches
+        // If booking for today, only show slots starting 30 mins from now
+        LocalTime nowBuffer = LocalTime.now().plusMinutes(30);
+        slotsByDate.forEach((date, slots) -> {
+            if (date.isBefore(first)) return;
+            for (Staff staff : targetStaff) {
+                StaffDay day = days.get(staff.getId()).get(date);
+                for (LocalTime start : day.free().freeStarts(duration, date.equals(today) ? nowBuffer : null)) {
+                    slots.add(new StaffSlot(staff, start, start.plusMinutes(duration), day.appointments()));
+                }
+            }
+        });
+        return slotsByDate;
+    }
+
+//    staff days (appointments, working hours, leaves) of the whole range fetched with three bulk queries
+    private Map<Long, Map<LocalDate, StaffDay>> computeDays(List<Long> staffIds, LocalDate from, LocalDate to) {
+        Map<Long, Map<LocalDate, List<Appointment>>> appointmentsMap = new HashMap<>();
+        appointmentRepository.findAllByStaffIdInAndBookingDateBetween(staffIds, from, to).forEach(a ->
+                appointmentsMap.computeIfAbsent(a.getStaff().getId(), k -> new HashMap<>())
+                        .computeIfAbsent(a.getAppointmentDate(), k -> new ArrayList<>())
+                        .add(a));
+
+        Map<Long, Map<DayOfWeek, StaffWorkingHours>> workingHoursMap = new HashMap<>();
+        staffWorkingHoursRepository.findAllByStaffIdIn(staffIds).forEach(wh ->
+                workingHoursMap.computeIfAbsent(wh.getStaff().getId(), k -> new EnumMap<>(DayOfWeek.class))
+                        .put(wh.getDayOfWeek(), wh));
+
+        Map<Long, Map<LocalDate, StaffLeave>> leavesMap = new HashMap<>();
+        staffLeaveRepository.findAllByStaffIdInAndLeaveDateBetween(staffIds, from, to).forEach(l ->
+                leavesMap.computeIfAbsent(l.getStaff().getId(), k -> new HashMap<>())
+                        .put(l.getLeaveDate(), l));
+
+        Map<Long, Map<LocalDate, StaffDay>> days = new HashMap<>();
+        for (Long staffId : staffIds) {
+            Map<LocalDate, StaffDay> staffDays = days.computeIfAbsent(staffId, k -> new HashMap<>());
+            for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+                staffDays.put(date, computeDay(
+                        workingHoursMap.getOrDefault(staffId, Map.of()).get(date.getDayOfWeek()),
+                        appointmentsMap.getOrDefault(staffId, Map.of()).getOrDefault(date, List.of()),
+                        leavesMap.getOrDefault(staffId, Map.of()).get(date)));
+            }
+        }
+        return days;
+    }
+
+    private StaffDay computeDay(StaffWorkingHours wh, List<Appointment> appointments, StaffLeave leave) {
+        if (wh == null || !wh.isWorkingDay()) return StaffDay.CLOSED;
+
+        // Combine appointments and partial leaves into blocked intervals
+        List<TimeInterval> blocked = new ArrayList<>();
+        appointments.forEach(a -> blocked.add(new TimeInterval(a.getStartTime(), a.getEndTime())));
+        if (leave != null) {
+            if (leave.getStartTime() == null || leave.getEndTime() == null) return StaffDay.CLOSED; // Full day leave
+            blocked.add(new TimeInterval(leave.getStartTime(), leave.getEndTime())); // Partial leave
+        }
+        return new StaffDay(DayOccupancy.of(wh.getStartTime(), wh.getEndTime(), blocked), appointments.size());
+    }
+}
@@ -0,0 +1,52 @@
+package com.ecommerce.service.appointment;
+
+import com.ecommerce.dto.intermediate.appointment.StaffSlot;
+import com.ecommerce.dto.intermediate.appointment.TempAppointmentDetails;
+import com.ecommerce.redis.RedisService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Optional;
+
+// keeps a slot reserved while the customer pays (same 30 minutes as the temp appointment)
+// the appointment row only exists after the payment callback, without a hold two customers could pay for one slot;
+// picking the staff and holding the slot is one redis script, so concurrent bookings never get the same staff range
+// a hold is released when the payment fails and otherwise simply expires, after a successful payment it stays until
+// then so instances still serving an older occupancy of that day cannot hand the slot out again
+// holds are the fast path only, AppointmentPersistService still checks the appointments table before saving
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SlotHolds {
+
+    private final RedisService redisService;
+
+//    holds the slot on the first candidate (free slots of the same start time, one per staff) nobody else is holding
+    public Optional<StaffSlot> hold(List<StaffSlot> candidates, LocalDate date, String transactionId) {
+        if (candidates.isEmpty()) return Optional.empty();
+        StaffSlot first = candidates.get(0);
+        Long staffId = redisService.holdSlot(
+                candidates.stream().map(slot -> slot.staff().getId()).toList(),
+                date, minuteOfDay(first.startTime()), minuteOfDay(first.endTime()), transactionId);
+        if (staffId == null) return Optional.empty();
+        return candidates.stream().filter(slot -> slot.staff().getId().equals(staffId)).findFirst();
+    }
+
+    public void release(TempAppointmentDetails details) {
+        if (details == null) return;
+        try {
+            redisService.releaseSlotHold(details.getStaffId(), details.getAppointmentDate(), details.getTransactionId());
+        } catch (Exception e) {
+            log.error("Failed to release slot hold {}, it expires on its own", details.getTransactionId(), e);
+        }
+    }
+
+//    helpers
+    private int minuteOfDay(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+}
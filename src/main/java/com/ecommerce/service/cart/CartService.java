@@ -9,14 +9,17 @@ import com.ecommerce.model.product.ProductModel;
 import com.ecommerce.redis.RedisService;
 import com.ecommerce.repository.cart.CartRepository;
 import com.ecommerce.repository.product.ProductRepository;
-import com.ecommerce.service.recommendation.SimilarUserUpdater;
+import com.ecommerce.service.recommendation.PopularityRanking;
+import com.ecommerce.service.recommendation.SimilarityRecomputeScheduler;
 import com.ecommerce.service.recommendation.UserActivityService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @RequiredArgsConstructor
 @Service
@@ -26,7 +29,8 @@ public class CartService {
     private final ProductRepository productRepository;
     private final UserActivityService userActivityService;
     private final RedisService redisService;
-    private final SimilarUserUpdater similarUserUpdater;
+    private final SimilarityRecomputeScheduler similarityRecomputeScheduler;
+    private final PopularityRanking popularityRanking;
 
     private final ProductMapper productMapper;
 
@@ -52,10 +56,12 @@ public class CartService {
         if(savedCart.getQuantity() == 1){
             userActivityService.recordActivity(userId, productId, ActivityType.CART_ADD, 5);
             redisService.incrementUserVector(userId, productId, 5);
+            popularityRanking.record(productId, 5);
         }else{
             redisService.incrementUserVector(userId, productId, 2);
+            popularityRanking.record(productId, 2);
         }
-        similarUserUpdater.updateSimilarUsersAsync(userId);
+        similarityRecomputeScheduler.markDirty(userId);
         return "Added to cart! Quantity: "+ savedCart.getQuantity();
     }
 
@@ -96,11 +102,14 @@ public class CartService {
             throw new ApplicationException("Not enough stock", "NOT_ENOUGH_STOCK", HttpStatus.BAD_REQUEST);
         }
 
+        int oldQuantity = cartItem.getQuantity();
         cartItem.setQuantity(newQuantity);
         cartRepository.save(cartItem);
 
         redisService.incrementUserVector(id, productId, 2); //for still engaging with this product
-        similarUserUpdater.updateSimilarUsersAsync(id);
+        // popularity follows the cart: more units add to it, fewer take back what the add gave
+        if (newQuantity != oldQuantity) popularityRanking.record(productId, newQuantity > oldQuantity ? 2 : -2);
+        similarityRecomputeScheduler.markDirty(id);
 
         return "Cart updated successfully! Quantity: "+ newQuantity;
     }
@@ -114,7 +123,8 @@ public class CartService {
         cartRepository.delete(cartItem);
 
         redisService.incrementUserVector(userId, productId, -5);
-        similarUserUpdater.updateSimilarUsersAsync(userId);
+        popularityRanking.record(productId, -5);
+        similarityRecomputeScheduler.markDirty(userId);
 
         return "Item removed form cart!";
     }
@@ -123,10 +133,13 @@ public class CartService {
     public String clearCart(Long id) {
         List<CartModel> cartItems = cartRepository.findCartItemsByUserId(id);
 
-        cartItems.forEach(c->{
+        Map<Long, Double> removed = new HashMap<>();
+        cartItems.forEach(c-> {
             redisService.incrementUserVector(id, c.getProduct().getId(), -5);
-            similarUserUpdater.updateSimilarUsersAsync(id);
+            removed.put(c.getProduct().getId(), -5.0);
         });
+        popularityRanking.recordAll(removed);
+        similarityRecomputeScheduler.markDirty(id);
 
         int deletedRow = cartRepository.deleteAllByUserId(id);
         return deletedRow + " items removed";
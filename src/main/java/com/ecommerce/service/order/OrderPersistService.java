@@ -19,7 +19,9 @@ import com.ecommerce.repository.order.OrderRepository;
 import com.ecommerce.repository.payment.PaymentRepository;
 import com.ecommerce.repository.product.ProductRepository;
 import com.ecommerce.repository.user.UserRepository;
-import com.ecommerce.service.recommendation.SimilarUserUpdater;
+import com.ecommerce.service.product.CatalogCache;
+import com.ecommerce.service.recommendation.PopularityRanking;
+import com.ecommerce.service.recommendation.SimilarityRecomputeScheduler;
 import com.ecommerce.service.recommendation.UserActivityService;
 import com.ecommerce.utils.EventHelper;
 import lombok.RequiredArgsConstructor;
@@ -30,6 +32,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -47,8 +50,10 @@ public class OrderPersistService {
 
     private final RedisService redisService;
     private final UserActivityService userActivityService;
-    private final SimilarUserUpdater similarUserUpdater;
+    private final SimilarityRecomputeScheduler similarityRecomputeScheduler;
+    private final PopularityRanking popularityRanking;
     private final NotificationProducer notificationProducer;
+    private final CatalogCache catalogCache;
 
     public String executeSingleCodOrder(ProductModel product, UserModel user, TempOrderDetails tempOrder) {
         OrderModel orderToBePersisted = OrderModel.builder()
@@ -69,10 +74,12 @@ public class OrderPersistService {
         product.setStock(product.getStock()-1);
         productRepository.save(product);
         orderRepository.save(orderToBePersisted);
+        catalogCache.refreshProduct(product.getId());
 
         userActivityService.recordActivity(user.getId(), product.getId(), ActivityType.PURCHASE, 10);
         redisService.incrementUserVector(user.getId(), product.getId(), 10);
-        similarUserUpdater.updateSimilarUsersAsync(user.getId());
+        popularityRanking.record(product.getId(), 10);
+        similarityRecomputeScheduler.markDirty(user.getId());
 
         NotificationEvent event = EventHelper.createEventForOrder(user, tempOrder, null);
         notificationProducer.send("notify.user", event);
@@ -93,6 +100,7 @@ public class OrderPersistService {
                 .payment(null)
                 .build();
 
+        Map<Long, Double> purchased = new HashMap<>();
         for (ProductModel product : products) {
             OrderItemDTO dto = itemDtoMap.get(product.getId());
 
@@ -110,13 +118,17 @@ public class OrderPersistService {
             userActivityService.recordActivity(user.getId(), product.getId(), ActivityType.PURCHASE, 10);
             userActivityService.recordActivity(user.getId(), product.getId(), ActivityType.CART_ADD, -2* dto.quantity());
             redisService.incrementUserVector(user.getId(), product.getId(), 10);
+            purchased.put(product.getId(), 10.0);
         }
 
         productRepository.saveAll(products);
         orderRepository.save(orderToBePersisted);
+        catalogCache.refreshProducts(products.stream().map(ProductModel::getId).toList());
+
+        popularityRanking.recordAll(purchased);
 
         cartRepository.deleteAllByUserId(user.getId());
-        similarUserUpdater.updateSimilarUsersAsync(user.getId());
+        similarityRecomputeScheduler.markDirty(user.getId());
 
         NotificationEvent event = EventHelper.createEventForOrder(user, tempOrder, null);
         notificationProducer.send("notify.user", event);
@@ -208,10 +220,12 @@ public class OrderPersistService {
         product.setStock(product.getStock()-1);
         productRepository.save(product);
         orderRepository.save(orderToBePersisted);
+        catalogCache.refreshProduct(product.getId());
 
         userActivityService.recordActivity(user.getId(), product.getId(), ActivityType.PURCHASE, 10);
         redisService.incrementUserVector(user.getId(), product.getId(), 10);
-        similarUserUpdater.updateSimilarUsersAsync(user.getId());
+        popularityRanking.record(product.getId(), 10);
+        similarityRecomputeScheduler.markDirty(user.getId());
 
         NotificationEvent event = EventHelper.createEventForOrder(user, tempOrder, payment);
         notificationProducer.send("notify.user", event);
@@ -238,6 +252,7 @@ public class OrderPersistService {
 
         orderToBePersisted.addPayment(payment);
 
+        Map<Long, Double> purchased = new HashMap<>();
         for (ProductModel product : products) {
             OrderItemDTO dto = itemDtoMap.get(product.getId());
 
@@ -256,13 +271,17 @@ public class OrderPersistService {
             userActivityService.recordActivity(user.getId(), product.getId(), ActivityType.PURCHASE, 10);
             userActivityService.recordActivity(user.getId(), product.getId(), ActivityType.CART_ADD, -2* dto.quantity());
             redisService.incrementUserVector(user.getId(), product.getId(), 10);
+            purchased.put(product.getId(), 10.0);
         }
 
         productRepository.saveAll(products);
         orderRepository.save(orderToBePersisted);
+        catalogCache.refreshProducts(products.stream().map(ProductModel::getId).toList());
+
+        popularityRanking.recordAll(purchased);
 
         cartRepository.deleteAllByUserId(user.getId());
-        similarUserUpdater.updateSimilarUsersAsync(user.getId());
+        similarityRecomputeScheduler.markDirty(user.getId());
 
         NotificationEvent event = EventHelper.createEventForOrder(user, tempOrder, payment);
         notificationProducer.send("notify.user", event);
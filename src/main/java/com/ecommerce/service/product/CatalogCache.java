@@ -0,0 +1,195 @@
+package com.ecommerce.service.product;
+
+import com.ecommerce.dto.response.product.BrandResponse;
+import com.ecommerce.dto.response.product.CategoryResponse;
+import com.ecommerce.dto.response.product.TagResponse;
+import com.ecommerce.mapper.product.BrandMapper;
+import com.ecommerce.mapper.product.CategoryMapper;
+import com.ecommerce.mapper.product.ProductMapper;
+import com.ecommerce.mapper.product.TagMapper;
+import com.ecommerce.model.product.BrandModel;
+import com.ecommerce.model.product.CategoryModel;
+import com.ecommerce.model.product.ProductModel;
+import com.ecommerce.model.product.TagModel;
+import com.ecommerce.repository.product.BrandRepository;
+import com.ecommerce.repository.product.CategoryRepository;
+import com.ecommerce.repository.product.ProductRepository;
+import com.ecommerce.repository.product.TagRepository;
+import com.ecommerce.service.product.CatalogSnapshot.CatalogEntry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+// keeps the public catalog in memory so browse endpoints do not hit postgres
+// writers (admin product changes, orders changing stock) call the refresh methods,
+// the new snapshot is published only after their transaction commits
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CatalogCache {
+
+    private final ProductRepository productRepository;
+    private final TagRepository tagRepository;
+    private final BrandRepository brandRepository;
+    private final CategoryRepository categoryRepository;
+
+    private final ProductMapper productMapper;
+    private final TagMapper tagMapper;
+    private final BrandMapper brandMapper;
+    private final CategoryMapper categoryMapper;
+
+    private final List<CatalogListener> listeners;
+    private final PlatformTransactionManager transactionManager;
+
+    private volatile CatalogSnapshot snapshot = CatalogSnapshot.EMPTY;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        List<CatalogEntry> entries = productRepository.findAllForCatalog().stream()
+                .map(this::toEntry)
+                .toList();
+        List<TagResponse> tags = tagRepository.findAll().stream().map(tagMapper::mapEntityToTagResponse).toList();
+        List<BrandResponse> brands = brandRepository.findAll().stream().map(brandMapper::mapEntityToBrandResponse).toList();
+        List<CategoryModel> categoryModels = categoryRepository.findAllWithParent();
+        List<CategoryResponse> categories = categoryModels.stream().map(categoryMapper::mapEntityToCategoryResponse).toList();
+        Map<String, String> categoryParents = new HashMap<>();
+        categoryModels.forEach(c -> categoryParents.put(c.getSlug(), parentSlug(c)));
+
+        synchronized (this) {
+            snapshot = CatalogSnapshot.build(snapshot.version() + 1, entries, tags, brands, categories, categoryParents);
+            notifyListeners(listener -> listener.onCatalogLoaded(snapshot));
+        }
+        log.info("Catalog snapshot loaded: {} products, version {}", entries.size(), snapshot.version());
+    }
+
+    public CatalogSnapshot snapshot() {
+        return snapshot;
+    }
+
+    public long version() {
+        return snapshot.version();
+    }
+
+//    re-reads the given products (with images, tags, brand and category) once the caller commits
+    public void refreshProducts(Collection<Long> productIds) {
+        if (productIds == null || productIds.isEmpty()) return;
+        Set<Long> ids = Set.copyOf(productIds);
+        afterCommit(() -> reloadProducts(ids));
+    }
+
+    public void refreshProduct(Long productId) {
+        refreshProducts(List.of(productId));
+    }
+
+    public void refreshTag(TagModel tag) {
+        TagResponse response = tagMapper.mapEntityToTagResponse(tag);
+        afterCommit(() -> publish(current -> current.withTag(response), this::taxonomyChanged));
+    }
+
+    public void refreshBrand(BrandModel brand) {
+        BrandResponse response = brandMapper.mapEntityToBrandResponse(brand);
+        afterCommit(() -> publish(current -> current.withBrand(response), this::taxonomyChanged));
+    }
+
+    public void refreshCategory(CategoryModel category) {
+        CategoryResponse response = categoryMapper.mapEntityToCategoryResponse(category);
+        String parentSlug = parentSlug(category);
+        afterCommit(() -> publish(current -> current.withCategory(response, parentSlug), this::taxonomyChanged));
+    }
+
+//    helpers
+    // read and publish under the same lock: a reload that publishes later also read later, so two refreshes of one
+    // product can not publish out of order and leave the older stock or price in the snapshot;
+    // the read runs in its own transaction, inside afterCommit the caller's persistence context would still hand
+    // back its own (possibly older) instances instead of the committed rows
+    private synchronized void reloadProducts(Set<Long> ids) {
+        List<CatalogEntry> changed = readTransaction().execute(status ->
+                productRepository.findAllForCatalogByIdIn(ids).stream()
+                        .map(this::toEntry)
+                        .toList());
+        if (changed == null || changed.isEmpty()) return;
+        publish(current -> current.withProducts(changed),
+                listener -> listener.onProductsChanged(snapshot, changed));
+    }
+
+    private TransactionTemplate readTransaction() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        template.setReadOnly(true);
+        return template;
+    }
+
+    private synchronized void publish(UnaryOperator<CatalogSnapshot> change, Consumer<CatalogListener> notification) {
+        snapshot = change.apply(snapshot);
+        log.debug("Catalog snapshot moved to version {}", snapshot.version());
+        notifyListeners(notification);
+    }
+
+    private void taxonomyChanged(CatalogListener listener) {
+        listener.onTaxonomyChanged(snapshot);
+    }
+
+    private void notifyListeners(Consumer<CatalogListener> notification) {
+        for (CatalogListener listener : listeners) {
+            try {
+                notification.accept(listener);
+            } catch (Exception e) {
+                log.error("Catalog listener {} failed", listener.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    runSafely(action);
+                }
+            });
+        } else {
+            runSafely(action);
+        }
+    }
+
+    private void runSafely(Runnable action) {
+        try {
+            action.run();
+        } catch (Exception e) {
+            log.error("Failed to refresh catalog snapshot", e);
+        }
+    }
+
+    private String parentSlug(CategoryModel category) {
+        return category.getParent() != null ? category.getParent().getSlug() : null;
+    }
+
+    private CatalogEntry toEntry(ProductModel product) {
+        return new CatalogEntry(
+                product.getId(),
+                productMapper.mapEntityToBriefProductsResponse(product),
+                product.getSlug(),
+                product.getDescription(),
+                product.getBrand() != null ? product.getBrand().getSlug() : null,
+                product.getCategory() != null ? product.getCategory().getSlug() : null,
+                product.getTags().stream().map(TagModel::getSlug).collect(Collectors.toUnmodifiableSet()),
+                product.getCreatedAt()
+        );
+    }
+}
@@ -0,0 +1,16 @@
+package com.ecommerce.service.product;
+
+import com.ecommerce.service.product.CatalogSnapshot.CatalogEntry;
+
+import java.util.Collection;
+
+// in memory indexes that must follow the catalog (search, autocomplete, ...) implement this,
+// CatalogCache calls them right after a new snapshot is published
+public interface CatalogListener {
+
+    void onCatalogLoaded(CatalogSnapshot snapshot);
+
+    void onProductsChanged(CatalogSnapshot snapshot, Collection<CatalogEntry> changed);
+
+    default void onTaxonomyChanged(CatalogSnapshot snapshot) {}
+}
@@ -0,0 +1,344 @@
+package com.ecommerce.service.product;
+
+import com.ecommerce.dto.response.product.BrandResponse;
+import com.ecommerce.dto.response.product.BriefProductsResponse;
+import com.ecommerce.dto.response.product.CategoryResponse;
+import com.ecommerce.dto.response.product.TagResponse;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+// immutable view of the public catalog, every write produces a new snapshot with version + 1
+// readers just grab the current reference so they never see a half updated catalog
+public final class CatalogSnapshot {
+
+    public record CatalogEntry(
+            Long id,
+            BriefProductsResponse brief,
+            String slug,
+            String description,
+            String brandSlug,
+            String categorySlug,
+            Set<String> tagSlugs,
+            LocalDateTime createdAt
+    ) {}
+
+    public static final CatalogSnapshot EMPTY = new CatalogSnapshot(
+            0L, Map.of(), Map.of(), 0L, Map.of(), Map.of(), CategoryTree.EMPTY, Map.of(), Map.of(), Map.of());
+
+    // changed entries are kept next to the shared table until there are this many, then folded into a new table
+    static final int MAX_RECENT_CHANGES = 256;
+
+    private final long version;
+    // id ordered table shared by consecutive snapshots, entries in recentChanges win over it
+    private final Map<Long, CatalogEntry> products;
+    private final Map<Long, CatalogEntry> recentChanges;
+    // sum of the content hashes of all entries, moved by the changed entries only
+    private final long productsFingerprint;
+    private final Map<String, List<Long>> productIdsByTag;
+    private final Map<String, List<Long>> productIdsByBrand;
+    private final CategoryTree categoryTree;
+    private final Map<String, TagResponse> tags;
+    private final Map<String, BrandResponse> brands;
+    private final Map<String, CategoryResponse> categories;
+
+    // full id ordered views, built by the first reader that needs them instead of by every write
+    private volatile Map<Long, CatalogEntry> allEntries;
+    private volatile List<BriefProductsResponse> allProducts;
+    private volatile Long fingerprint;
+
+    private CatalogSnapshot(long version,
+                            Map<Long, CatalogEntry> products,
+                            Map<Long, CatalogEntry> recentChanges,
+                            long productsFingerprint,
+                            Map<String, List<Long>> productIdsByTag,
+                            Map<String, List<Long>> productIdsByBrand,
+                            CategoryTree categoryTree,
+                            Map<String, TagResponse> tags,
+                            Map<String, BrandResponse> brands,
+                            Map<String, CategoryResponse> categories) {
+        this.version = version;
+        this.products = products;
+        this.recentChanges = recentChanges;
+        this.productsFingerprint = productsFingerprint;
+        this.productIdsByTag = productIdsByTag;
+        this.productIdsByBrand = productIdsByBrand;
+        this.categoryTree = categoryTree;
+        this.tags = tags;
+        this.brands = brands;
+        this.categories = categories;
+        if (recentChanges.isEmpty()) this.allEntries = products;
+    }
+
+//    full build, used once on startup
+//    categoryParents: category slug -> parent category slug (null for top level)
+    public static CatalogSnapshot build(long version,
+                                        Collection<CatalogEntry> entries,
+                                        Collection<TagResponse> tags,
+                                        Collection<BrandResponse> brands,
+                                        Collection<CategoryResponse> categories,
+                                        Map<String, String> categoryParents) {
+        Map<Long, CatalogEntry> products = new TreeMap<>();
+        entries.forEach(e -> products.put(e.id(), e));
+
+        Map<String, List<Long>> byTag = new HashMap<>();
+        Map<String, List<Long>> byBrand = new HashMap<>();
+        long productsFingerprint = 0;
+        for (CatalogEntry e : products.values()) {
+            productsFingerprint += contentHash(e);
+            e.tagSlugs().forEach(slug -> byTag.computeIfAbsent(slug, k -> new ArrayList<>()).add(e.id()));
+            if (e.brandSlug() != null) byBrand.computeIfAbsent(e.brandSlug(), k -> new ArrayList<>()).add(e.id());
+        }
+
+        Map<String, TagResponse> tagMap = new LinkedHashMap<>();
+        tags.forEach(t -> tagMap.put(t.slug(), t));
+        Map<String, BrandResponse> brandMap = new LinkedHashMap<>();
+        brands.forEach(b -> brandMap.put(b.slug(), b));
+        Map<String, CategoryResponse> categoryMap = new LinkedHashMap<>();
+        categories.forEach(c -> categoryMap.put(c.slug(), c));
+        Map<String, String> parentOf = new LinkedHashMap<>();
+        categories.forEach(c -> parentOf.put(c.slug(), categoryParents.get(c.slug())));
+
+        return new CatalogSnapshot(version,
+                Collections.unmodifiableMap(products),
+                Map.of(),
+                productsFingerprint,
+                freeze(byTag), freeze(byBrand),
+                CategoryTree.build(parentOf, products.values()),
+                Collections.unmodifiableMap(tagMap),
+                Collections.unmodifiableMap(brandMap),
+                Collections.unmodifiableMap(categoryMap));
+    }
+
+//    incremental update, cost follows the changed entries and not the catalog size:
+//    the entries go into the small recent changes map, tag and brand lists are copied only when they change,
+//    the category layout is re-laid only when a product is new or moved to another category
+//    (a stock or price change from an order touches none of them)
+    public CatalogSnapshot withProducts(Collection<CatalogEntry> changed) {
+        Map<Long, CatalogEntry> newRecent = new HashMap<>(recentChanges);
+        Map<String, List<Long>> byTag = productIdsByTag;
+        Map<String, List<Long>> byBrand = productIdsByBrand;
+        boolean layoutChanged = false;
+        long newFingerprint = productsFingerprint;
+
+        for (CatalogEntry entry : changed) {
+            CatalogEntry old = newRecent.containsKey(entry.id()) ? newRecent.get(entry.id()) : products.get(entry.id());
+            newRecent.put(entry.id(), entry);
+            newFingerprint += contentHash(entry) - (old == null ? 0 : contentHash(old));
+
+            if (old == null || !old.tagSlugs().equals(entry.tagSlugs())) {
+                if (byTag == productIdsByTag) byTag = new HashMap<>(productIdsByTag);
+                if (old != null) for (String slug : old.tagSlugs()) removeId(byTag, slug, old.id());
+                for (String slug : entry.tagSlugs()) addId(byTag, slug, entry.id());
+            }
+            if (old == null || !Objects.equals(old.brandSlug(), entry.brandSlug())) {
+                if (byBrand == productIdsByBrand) byBrand = new HashMap<>(productIdsByBrand);
+                if (old != null) removeId(byBrand, old.brandSlug(), old.id());
+                addId(byBrand, entry.brandSlug(), entry.id());
+            }
+            if (old == null || !Objects.equals(old.categorySlug(), entry.categorySlug())) layoutChanged = true;
+        }
+
+        Map<Long, CatalogEntry> newProducts = products;
+        if (newRecent.size() > MAX_RECENT_CHANGES) {
+            newProducts = Collections.unmodifiableMap(merge(products, newRecent));
+            newRecent = Map.of();
+        }
+
+        CatalogSnapshot next = new CatalogSnapshot(version + 1,
+                newProducts,
+                newRecent.isEmpty() ? Map.of() : Collections.unmodifiableMap(newRecent),
+                newFingerprint,
+                byTag == productIdsByTag ? byTag : Collections.unmodifiableMap(byTag),
+                byBrand == productIdsByBrand ? byBrand : Collections.unmodifiableMap(byBrand),
+                categoryTree, tags, brands, categories);
+        return layoutChanged ? next.withCategoryTree(categoryTree.withProducts(next.entries())) : next;
+    }
+
+    public CatalogSnapshot withTag(TagResponse tag) {
+        Map<String, TagResponse> newTags = new LinkedHashMap<>(tags);
+        newTags.put(tag.slug(), tag);
+        return new CatalogSnapshot(version + 1, products, recentChanges, productsFingerprint, productIdsByTag, productIdsByBrand,
+                categoryTree, Collections.unmodifiableMap(newTags), brands, categories);
+    }
+
+    public CatalogSnapshot withBrand(BrandResponse brand) {
+        Map<String, BrandResponse> newBrands = new LinkedHashMap<>(brands);
+        newBrands.put(brand.slug(), brand);
+        return new CatalogSnapshot(version + 1, products, recentChanges, productsFingerprint, productIdsByTag, productIdsByBrand,
+                categoryTree, tags, Collections.unmodifiableMap(newBrands), categories);
+    }
+
+    public CatalogSnapshot withCategory(CategoryResponse category, String parentSlug) {
+        Map<String, CategoryResponse> newCategories = new LinkedHashMap<>(categories);
+        newCategories.put(category.slug(), category);
+        return new CatalogSnapshot(version + 1, products, recentChanges, productsFingerprint, productIdsByTag, productIdsByBrand,
+                categoryTree.withCategory(category.slug(), parentSlug, entries()),
+                tags, brands, Collections.unmodifiableMap(newCategories));
+    }
+
+    public long version() {
+        return version;
+    }
+
+//    hash of the content instead of a counter: the same catalog gives the same value after a restart and on every
+//    instance, so it can back an etag that clients keep across deploys and load balancer hops
+    public long fingerprint() {
+        Long value = fingerprint;
+        if (value == null) {
+            long taxonomy = 0;
+            for (TagResponse tag : tags.values()) taxonomy += contentHash("tag", tag.slug(), tag.name());
+            for (BrandResponse brand : brands.values()) {
+                taxonomy += contentHash("brand", brand.slug(), brand.name(), brand.logoUrl());
+            }
+            for (CategoryResponse category : categories.values()) {
+                List<String> path = categoryTree.pathOf(category.slug());
+                taxonomy += contentHash("category", category.slug(), category.name(), category.imageUrl(),
+                        path.size() > 1 ? path.get(1) : null);
+            }
+            value = productsFingerprint + taxonomy;
+            fingerprint = value;
+        }
+        return value;
+    }
+
+//    every product in id order
+    public List<BriefProductsResponse> allProducts() {
+        List<BriefProductsResponse> briefs = allProducts;
+        if (briefs == null) {
+            briefs = entries().stream().map(CatalogEntry::brief).toList();
+            allProducts = briefs;
+        }
+        return briefs;
+    }
+
+    public Optional<CatalogEntry> product(Long id) {
+        return Optional.ofNullable(entry(id));
+    }
+
+    public Collection<CatalogEntry> entries() {
+        Map<Long, CatalogEntry> entries = allEntries;
+        if (entries == null) {
+            entries = Collections.unmodifiableMap(merge(products, recentChanges));
+            allEntries = entries;
+        }
+        return entries.values();
+    }
+
+    public List<BriefProductsResponse> productsOfTag(String tagSlug) {
+        return briefsOf(productIdsByTag.get(tagSlug));
+    }
+
+    public List<BriefProductsResponse> productsOfBrand(String brandSlug) {
+        return briefsOf(productIdsByBrand.get(brandSlug));
+    }
+
+//    products of the category and of all its sub categories
+    public List<BriefProductsResponse> productsOfCategory(String categorySlug) {
+        return briefsOf(categoryTree.productIdsOfSubtree(categorySlug));
+    }
+
+//    category slug and its ancestors, a product of the category is also listed under each of them
+    public List<String> categoryPath(String categorySlug) {
+        return categoryTree.pathOf(categorySlug);
+    }
+
+    public List<BriefProductsResponse> briefsOf(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) return List.of();
+        List<BriefProductsResponse> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            CatalogEntry entry = entry(id);
+            if (entry != null) result.add(entry.brief());
+        }
+        return result;
+    }
+
+    public Optional<TagResponse> tag(String slug) {
+        if (slug == null) return Optional.empty();
+        return Optional.ofNullable(tags.get(slug));
+    }
+
+    public Optional<BrandResponse> brand(String slug) {
+        if (slug == null) return Optional.empty();
+        return Optional.ofNullable(brands.get(slug));
+    }
+
+    public Optional<CategoryResponse> category(String slug) {
+        if (slug == null) return Optional.empty();
+        return Optional.ofNullable(categories.get(slug));
+    }
+
+    public List<TagResponse> tags() {
+        return List.copyOf(tags.values());
+    }
+
+    public List<BrandResponse> brands() {
+        return List.copyOf(brands.values());
+    }
+
+    public List<CategoryResponse> categories() {
+        return List.copyOf(categories.values());
+    }
+
+//    helpers
+    private CatalogEntry entry(Long id) {
+        CatalogEntry changed = recentChanges.get(id);
+        return changed != null ? changed : products.get(id);
+    }
+
+    private CatalogSnapshot withCategoryTree(CategoryTree tree) {
+        return new CatalogSnapshot(version, products, recentChanges, productsFingerprint, productIdsByTag, productIdsByBrand,
+                tree, tags, brands, categories);
+    }
+
+    private static long contentHash(CatalogEntry e) {
+        BriefProductsResponse b = e.brief();
+        return contentHash("product", e.id(), b.title(), b.shortDescription(),
+                b.price() == null ? null : b.price().stripTrailingZeros().toPlainString(), b.stock(), b.imageUrl(),
+                e.slug(), e.description(), e.brandSlug(), e.categorySlug(), new TreeSet<>(e.tagSlugs()), e.createdAt());
+    }
+
+    // 64 bit hash over the string forms, only specified behaviour (no identity or record hash codes) so it is
+    // stable across jvms; the final mix spreads it before entries are summed
+    private static long contentHash(Object... parts) {
+        long h = 1125899906842597L;
+        for (Object part : parts) {
+            String text = String.valueOf(part);
+            for (int i = 0; i < text.length(); i++) h = 31 * h + text.charAt(i);
+            h = 31 * h + 0x1f;
+        }
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+
+    private static Map<Long, CatalogEntry> merge(Map<Long, CatalogEntry> products, Map<Long, CatalogEntry> changes) {
+        Map<Long, CatalogEntry> merged = new TreeMap<>(products);
+        merged.putAll(changes);
+        return merged;
+    }
+
+    private static Map<String, List<Long>> freeze(Map<String, List<Long>> index) {
+        Map<String, List<Long>> frozen = new HashMap<>();
+        index.forEach((slug, ids) -> frozen.put(slug, List.copyOf(ids)));
+        return Collections.unmodifiableMap(frozen);
+    }
+
+    private static void addId(Map<String, List<Long>> index, String slug, Long id) {
+        if (slug == null) return;
+        List<Long> ids = new ArrayList<>(index.getOrDefault(slug, List.of()));
+        int pos = Collections.binarySearch(ids, id);
+        if (pos < 0) ids.add(-pos - 1, id);
+        index.put(slug, List.copyOf(ids));
+    }
+
+    private static void removeId(Map<String, List<Long>> index, String slug, Long id) {
+        if (slug == null) return;
+        List<Long> current = index.get(slug);
+        if (current == null) return;
+        List<Long> ids = new ArrayList<>(current);
+        ids.remove(id);
+        if (ids.isEmpty()) index.remove(slug);
+        else index.put(slug, List.copyOf(ids));
+    }
+}
@@ -0,0 +1,134 @@
+package com.ecommerce.service.product;
+
+import com.ecommerce.service.product.CatalogSnapshot.CatalogEntry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+
+// categories numbered in pre-order, so a category and all of its descendants own one contiguous
+// range of positions [position, lastInSubtree]
+// products are laid out in the same order, which makes "everything under hair-care" a single range slice
+// a parent cycle (a -> b -> a) has no root to start from, it is cut at its first category in iteration order
+@Slf4j
+final class CategoryTree {
+
+    static final CategoryTree EMPTY = new CategoryTree(Map.of(), Map.of(), new int[0], List.of(), 0);
+
+    private final Map<String, String> parentOf;
+    private final Map<String, Integer> positions;
+    private final int[] lastInSubtree;
+//    product ids ordered by (category position, id), products of position p are [offsets[p], offsets[p + 1])
+    private final long[] productIds;
+    private final int[] offsets;
+
+//    parentOf: category slug -> parent slug (null for top level categories), iteration order is kept for siblings
+    static CategoryTree build(Map<String, String> parentOf, Collection<CatalogEntry> products) {
+        Map<String, List<String>> children = new LinkedHashMap<>();
+        List<String> roots = new ArrayList<>();
+        parentOf.forEach((slug, parent) -> {
+            if (parent == null || !parentOf.containsKey(parent)) roots.add(slug);
+            else children.computeIfAbsent(parent, k -> new ArrayList<>()).add(slug);
+        });
+
+        Map<String, Integer> positions = new HashMap<>();
+        int[] lastInSubtree = new int[parentOf.size()];
+        for (String root : roots) number(root, children, positions, lastInSubtree);
+        for (String slug : parentOf.keySet()) {
+            if (positions.containsKey(slug)) continue;
+            log.warn("Category {} is part of a parent cycle, listing it as a top level category", slug);
+            number(slug, children, positions, lastInSubtree);
+        }
+
+        return new CategoryTree(Collections.unmodifiableMap(new LinkedHashMap<>(parentOf)),
+                Collections.unmodifiableMap(positions), lastInSubtree, products, positions.size());
+    }
+
+    private CategoryTree(Map<String, String> parentOf, Map<String, Integer> positions, int[] lastInSubtree,
+                         Collection<CatalogEntry> products, int categoryCount) {
+        this.parentOf = parentOf;
+        this.positions = positions;
+        this.lastInSubtree = lastInSubtree;
+
+        // counting sort by category position, products come in id order so ids stay sorted inside a category
+        this.offsets = new int[categoryCount + 1];
+        for (CatalogEntry entry : products) {
+            Integer position = positionOf(entry.categorySlug());
+            if (position != null) offsets[position + 1]++;
+        }
+        for (int p = 0; p < categoryCount; p++) offsets[p + 1] += offsets[p];
+
+        this.productIds = new long[offsets[categoryCount]];
+        int[] next = Arrays.copyOf(offsets, categoryCount);
+        for (CatalogEntry entry : products) {
+            Integer position = positionOf(entry.categorySlug());
+            if (position != null) productIds[next[position]++] = entry.id();
+        }
+    }
+
+    CategoryTree withProducts(Collection<CatalogEntry> products) {
+        return new CategoryTree(parentOf, positions, lastInSubtree, products, positions.size());
+    }
+
+    CategoryTree withCategory(String slug, String parentSlug, Collection<CatalogEntry> products) {
+        Map<String, String> newParentOf = new LinkedHashMap<>(parentOf);
+        newParentOf.put(slug, parentSlug);
+        return build(newParentOf, products);
+    }
+
+//    ids of the products in the category and all of its sub categories
+    List<Long> productIdsOfSubtree(String slug) {
+        Integer position = positionOf(slug);
+        if (position == null) return List.of();
+        int from = offsets[position];
+        int to = offsets[lastInSubtree[position] + 1];
+        List<Long> ids = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) ids.add(productIds[i]);
+        return ids;
+    }
+
+//    the category followed by its ancestors up to the top level category, empty for an unknown slug
+    List<String> pathOf(String slug) {
+        Integer position = positionOf(slug);
+        if (position == null) return List.of();
+        List<String> path = new ArrayList<>();
+        path.add(slug);
+        // only follow parents whose range really contains the child, positions strictly decrease on the way up
+        for (String parent = parentOf.get(slug); parent != null; parent = parentOf.get(parent)) {
+            Integer parentPosition = positions.get(parent);
+            if (parentPosition == null || parentPosition >= position || lastInSubtree[parentPosition] < position) break;
+            path.add(parent);
+            position = parentPosition;
+        }
+        return path;
+    }
+
+//    helpers
+    private Integer positionOf(String slug) {
+        return slug == null ? null : positions.get(slug);
+    }
+
+    // iterative so a deep or accidentally cyclic parent chain can not blow the stack
+    private static void number(String root, Map<String, List<String>> children,
+                               Map<String, Integer> positions, int[] lastInSubtree) {
+        Deque<String> path = new ArrayDeque<>();
+        Deque<Iterator<String>> pending = new ArrayDeque<>();
+        positions.put(root, positions.size());
+        path.push(root);
+        pending.push(children.getOrDefault(root, List.of()).iterator());
+
+        while (!path.isEmpty()) {
+            Iterator<String> it = pending.peek();
+            if (it.hasNext()) {
+                String child = it.next();
+                if (positions.containsKey(child)) continue;
+                positions.put(child, positions.size());
+                path.push(child);
+                pending.push(children.getOrDefault(child, List.of()).iterator());
+            } else {
+                String done = path.pop();
+                pending.pop();
+                lastInSubtree[positions.get(done)] = positions.size() - 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.ecommerce.service.product;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+// rebuilds an index from the latest snapshot on the task executor instead of the thread that changed the catalog
+// requests arriving while a rebuild is queued only replace the snapshot, so a burst of admin edits costs
+// one rebuild running and at most one queued behind it, rebuilds never run concurrently
+@Slf4j
+final class CoalescedRebuild {
+
+    private final String name;
+    private final Executor executor;
+    private final Consumer<CatalogSnapshot> rebuild;
+
+    private final AtomicReference<CatalogSnapshot> latest = new AtomicReference<>();
+    private final AtomicBoolean queued = new AtomicBoolean();
+
+    CoalescedRebuild(String name, Executor executor, Consumer<CatalogSnapshot> rebuild) {
+        this.name = name;
+        this.executor = executor;
+        this.rebuild = rebuild;
+    }
+
+    void request(CatalogSnapshot snapshot) {
+        latest.set(snapshot);
+        if (!queued.compareAndSet(false, true)) return;
+        try {
+            executor.execute(this::run);
+        } catch (RejectedExecutionException e) {
+            log.warn("Executor full, rebuilding {} inline", name);
+            run();
+        }
+    }
+
+//    startup build, the caller waits for it
+    void now(CatalogSnapshot snapshot) {
+        latest.set(snapshot);
+        run();
+    }
+
+//    helpers
+    private synchronized void run() {
+        // cleared before reading the snapshot, a request after this point schedules one more run
+        queued.set(false);
+        try {
+            rebuild.accept(latest.get());
+        } catch (Exception e) {
+            log.error("Failed to rebuild {}", name, e);
+        }
+    }
+}
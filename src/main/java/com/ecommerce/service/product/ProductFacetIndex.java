@@ -0,0 +1,196 @@
+package com.ecommerce.service.product;
+
+import com.ecommerce.model.product.PriceBand;
+import com.ecommerce.service.product.CatalogSnapshot.CatalogEntry;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+// one bitmap per facet value over product ordinals (position of the product in id order)
+// filters inside one facet are OR-ed, different facets are AND-ed
+// a product is set in the bitmap of its category and of every ancestor, so "hair-care" matches its sub categories
+// exactly like browsing it does (CategoryTree)
+// a product change only copies and patches the bitmaps it leaves or joins, new products are appended
+// since ids only grow, the full build is left for startup and taxonomy changes
+@Component
+public class ProductFacetIndex implements CatalogListener {
+
+    public static final String BRAND = "brand";
+    public static final String CATEGORY = "category";
+    public static final String TAG = "tag";
+    public static final String PRICE = "price";
+    public static final String STOCK = "stock";
+
+    public static final String IN_STOCK = "IN_STOCK";
+    public static final String OUT_OF_STOCK = "OUT_OF_STOCK";
+
+    private static final List<String> FACETS = List.of(BRAND, CATEGORY, TAG, PRICE, STOCK);
+
+    public record FacetResult(List<Long> productIds, int totalHits, Map<String, Map<String, Integer>> facets) {}
+
+    private record FacetTable(long[] productIds, BitSet all, Map<String, Map<String, BitSet>> bitmaps) {}
+
+    private volatile FacetTable table = new FacetTable(new long[0], new BitSet(), Map.of());
+
+    @Override
+    public synchronized void onCatalogLoaded(CatalogSnapshot snapshot) {
+        rebuild(snapshot);
+    }
+
+    @Override
+    public synchronized void onProductsChanged(CatalogSnapshot snapshot, Collection<CatalogEntry> changed) {
+        FacetTable current = table;
+        long[] knownIds = current.productIds();
+        Map<Long, CatalogEntry> updated = new HashMap<>();
+        TreeMap<Long, CatalogEntry> added = new TreeMap<>();
+        for (CatalogEntry entry : changed) {
+            if (Arrays.binarySearch(knownIds, entry.id()) >= 0) updated.put(entry.id(), entry);
+            else added.put(entry.id(), entry);
+        }
+        // an id below the last known one would break the id order of the ordinals
+        if (!added.isEmpty() && knownIds.length > 0 && added.firstKey() < knownIds[knownIds.length - 1]) {
+            rebuild(snapshot);
+            return;
+        }
+
+        long[] productIds = added.isEmpty() ? knownIds : Arrays.copyOf(knownIds, knownIds.length + added.size());
+        Map<String, Map<String, BitSet>> bitmaps = new HashMap<>();
+        FACETS.forEach(facet -> bitmaps.put(facet, new TreeMap<>(current.bitmaps().getOrDefault(facet, Map.of()))));
+        Set<BitSet> copied = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        updated.values().forEach(entry -> {
+            int ordinal = Arrays.binarySearch(knownIds, entry.id());
+            Map<String, List<String>> facetValues = facetValues(snapshot, entry);
+            // only bitmaps the product leaves are copied, a stock edit that keeps it in stock copies nothing
+            facetValues.forEach((facet, keep) -> bitmaps.get(facet).replaceAll((value, bits) -> {
+                if (!bits.get(ordinal) || keep.contains(value)) return bits;
+                BitSet copy = writable(bits, copied);
+                copy.clear(ordinal);
+                return copy;
+            }));
+            index(bitmaps, facetValues, ordinal, copied);
+        });
+        bitmaps.values().forEach(values -> values.values().removeIf(BitSet::isEmpty));
+        int ordinal = knownIds.length;
+        for (CatalogEntry entry : added.values()) {
+            productIds[ordinal] = entry.id();
+            index(bitmaps, facetValues(snapshot, entry), ordinal++, copied);
+        }
+
+        BitSet all = new BitSet(productIds.length);
+        all.set(0, productIds.length);
+        table = new FacetTable(productIds, all, bitmaps);
+    }
+
+    @Override
+    public synchronized void onTaxonomyChanged(CatalogSnapshot snapshot) {
+        // a moved category changes the ancestors of all its products
+        rebuild(snapshot);
+    }
+
+//    selected: facet name -> chosen values, empty or missing facet means no filter on it
+    public FacetResult filter(Map<String, ? extends Collection<String>> selected, int offset, int limit) {
+        FacetTable current = table;
+
+        Map<String, BitSet> selections = new HashMap<>();
+        for (String facet : FACETS) {
+            Collection<String> values = selected.get(facet);
+            if (values == null || values.isEmpty()) continue;
+            BitSet union = new BitSet(current.productIds().length);
+            Map<String, BitSet> facetBitmaps = current.bitmaps().getOrDefault(facet, Map.of());
+            for (String value : values) {
+                BitSet bits = facetBitmaps.get(value);
+                if (bits != null) union.or(bits);
+            }
+            selections.put(facet, union);
+        }
+
+        BitSet result = andAll(current.all(), selections, null);
+
+        List<Long> ids = new ArrayList<>(limit);
+        int skipped = 0;
+        for (int i = result.nextSetBit(0); i >= 0 && ids.size() < limit; i = result.nextSetBit(i + 1)) {
+            if (skipped++ < offset) continue;
+            ids.add(current.productIds()[i]);
+        }
+
+        // counts of a facet ignore its own selection so the shopper sees what switching the value would give
+        Map<String, Map<String, Integer>> facetCounts = new LinkedHashMap<>();
+        for (String facet : FACETS) {
+            BitSet base = selections.containsKey(facet) ? andAll(current.all(), selections, facet) : result;
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            current.bitmaps().getOrDefault(facet, Map.of()).forEach((value, bits) -> {
+                BitSet hit = (BitSet) bits.clone();
+                hit.and(base);
+                int count = hit.cardinality();
+                if (count > 0) counts.put(value, count);
+            });
+            facetCounts.put(facet, counts);
+        }
+
+        return new FacetResult(ids, result.cardinality(), facetCounts);
+    }
+
+//    helpers
+    private BitSet andAll(BitSet all, Map<String, BitSet> selections, String skipFacet) {
+        BitSet result = (BitSet) all.clone();
+        selections.forEach((facet, bits) -> {
+            if (!facet.equals(skipFacet)) result.and(bits);
+        });
+        return result;
+    }
+
+    private void rebuild(CatalogSnapshot snapshot) {
+        Collection<CatalogEntry> entries = snapshot.entries();
+        long[] productIds = new long[entries.size()];
+        Map<String, Map<String, BitSet>> bitmaps = new HashMap<>();
+        FACETS.forEach(facet -> bitmaps.put(facet, new TreeMap<>()));
+
+        Set<BitSet> copied = Collections.newSetFromMap(new IdentityHashMap<>());
+        int ordinal = 0;
+        for (CatalogEntry entry : entries) {
+            productIds[ordinal] = entry.id();
+            index(bitmaps, facetValues(snapshot, entry), ordinal++, copied);
+        }
+
+        BitSet all = new BitSet(productIds.length);
+        all.set(0, productIds.length);
+        table = new FacetTable(productIds, all, bitmaps);
+    }
+
+//    facet -> values the product is listed under
+    private Map<String, List<String>> facetValues(CatalogSnapshot snapshot, CatalogEntry entry) {
+        Integer stock = entry.brief().stock();
+        Map<String, List<String>> values = new HashMap<>();
+        values.put(BRAND, entry.brandSlug() == null ? List.of() : List.of(entry.brandSlug()));
+        values.put(CATEGORY, snapshot.categoryPath(entry.categorySlug()));
+        values.put(TAG, List.copyOf(entry.tagSlugs()));
+        values.put(PRICE, List.of(PriceBand.of(entry.brief().price()).name()));
+        values.put(STOCK, List.of((stock != null && stock > 0) ? IN_STOCK : OUT_OF_STOCK));
+        return values;
+    }
+
+    private void index(Map<String, Map<String, BitSet>> bitmaps, Map<String, List<String>> facetValues, int ordinal,
+                       Set<BitSet> copied) {
+        facetValues.forEach((facet, values) -> values.forEach(value -> set(bitmaps, facet, value, ordinal, copied)));
+    }
+
+    private void set(Map<String, Map<String, BitSet>> bitmaps, String facet, String value, int ordinal,
+                     Set<BitSet> copied) {
+        Map<String, BitSet> values = bitmaps.get(facet);
+        BitSet bits = values.get(value);
+        if (bits != null && bits.get(ordinal)) return;
+        BitSet target = bits == null ? new BitSet() : writable(bits, copied);
+        if (bits == null) copied.add(target);
+        target.set(ordinal);
+        values.put(value, target);
+    }
+
+    // bitmaps of the published table are shared with readers, they are copied once per update before a write
+    private BitSet writable(BitSet bits, Set<BitSet> copied) {
+        if (copied.contains(bits)) return bits;
+        BitSet copy = (BitSet) bits.clone();
+        copied.add(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,262 @@
+package com.ecommerce.service.product;
+
+import com.ecommerce.dto.response.product.BrandResponse;
+import com.ecommerce.dto.response.product.CategoryResponse;
+import com.ecommerce.dto.response.product.TagResponse;
+import com.ecommerce.service.product.CatalogSnapshot.CatalogEntry;
+import com.ecommerce.utils.SearchTextHelper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// in memory inverted index over the catalog, ranked with BM25 (field weighted)
+// every query word must match a term of the product (exactly or as prefix), same as the old LIKE search
+// a word with no such match falls back to typo tolerant matching against title, brand, category and tag words:
+// candidates come from a trigram index and are verified with a bounded edit distance
+@Slf4j
+@Component
+public class ProductSearchIndex implements CatalogListener {
+
+    public record SearchHits(List<Long> productIds, int totalHits) {}
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double PREFIX_MATCH_WEIGHT = 0.6;
+    static final int MAX_PREFIX_EXPANSIONS = 30;
+    private static final double FUZZY_MATCH_WEIGHT = 0.5;
+    private static final int MIN_FUZZY_TERM_LENGTH = 4;
+    private static final int MAX_FUZZY_EXPANSIONS = 10;
+    private static final int TRIGRAMS_PER_EDIT = 4;
+
+//    title matches count more than a word deep inside the long description
+    private static final float TITLE_WEIGHT = 3f;
+    private static final float TAXONOMY_WEIGHT = 2f;
+    private static final float SLUG_WEIGHT = 1f;
+    private static final float SHORT_DESCRIPTION_WEIGHT = 1f;
+    private static final float DESCRIPTION_WEIGHT = 0.5f;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // term -> (productId -> weighted term frequency), sorted so prefixes are a range scan
+    private final NavigableMap<String, Map<Long, Float>> postings = new TreeMap<>();
+    private final Map<Long, Set<String>> termsOfProduct = new HashMap<>();
+    private final Map<Long, Float> docLengths = new HashMap<>();
+    private double totalDocLength = 0;
+
+    // typo tolerance: trigram -> words, word -> number of products using it in title / brand / category / tag
+    private final Map<String, Set<String>> termsOfTrigram = new HashMap<>();
+    private final Map<String, Integer> fuzzyTermRefs = new HashMap<>();
+    private final Map<Long, Set<String>> fuzzyTermsOfProduct = new HashMap<>();
+
+    @Override
+    public void onCatalogLoaded(CatalogSnapshot snapshot) {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            termsOfProduct.clear();
+            docLengths.clear();
+            totalDocLength = 0;
+            termsOfTrigram.clear();
+            fuzzyTermRefs.clear();
+            fuzzyTermsOfProduct.clear();
+            snapshot.entries().forEach(entry -> index(snapshot, entry));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Search index built with {} terms for {} products", postings.size(), docLengths.size());
+    }
+
+    @Override
+    public void onProductsChanged(CatalogSnapshot snapshot, Collection<CatalogEntry> changed) {
+        lock.writeLock().lock();
+        try {
+            for (CatalogEntry entry : changed) {
+                remove(entry.id());
+                index(snapshot, entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public SearchHits search(String query, int offset, int limit) {
+        List<String> queryTerms = SearchTextHelper.tokenize(query).stream().distinct().toList();
+        if (queryTerms.isEmpty()) return new SearchHits(List.of(), 0);
+
+        lock.readLock().lock();
+        try {
+            int docCount = docLengths.size();
+            if (docCount == 0) return new SearchHits(List.of(), 0);
+            double avgDocLength = totalDocLength / docCount;
+
+            Map<Long, Double> scores = null;
+            for (String queryTerm : queryTerms) {
+                Map<Long, Double> termScores = scoreTerm(queryTerm, docCount, avgDocLength);
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    // AND: keep only products matching every query word
+                    Map<Long, Double> merged = new HashMap<>();
+                    for (Map.Entry<Long, Double> e : scores.entrySet()) {
+                        Double other = termScores.get(e.getKey());
+                        if (other != null) merged.put(e.getKey(), e.getValue() + other);
+                    }
+                    scores = merged;
+                }
+                if (scores.isEmpty()) return new SearchHits(List.of(), 0);
+            }
+
+            List<Long> ranked = scores.entrySet().stream()
+                    .sorted(Map.Entry.<Long, Double>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.comparingByKey()))
+                    .skip(offset)
+                    .limit(limit)
+                    .map(Map.Entry::getKey)
+                    .toList();
+            return new SearchHits(ranked, scores.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+//    helpers (callers hold the lock)
+    private Map<Long, Double> scoreTerm(String queryTerm, int docCount, double avgDocLength) {
+        Map<Long, Double> termScores = new HashMap<>();
+
+        Map<Long, Float> exact = postings.get(queryTerm);
+        if (exact != null) addBm25(termScores, exact, 1.0, docCount, avgDocLength);
+
+        int expansions = 0;
+        for (Map.Entry<String, Map<Long, Float>> e :
+                postings.subMap(queryTerm, false, queryTerm + Character.MAX_VALUE, false).entrySet()) {
+            if (++expansions > MAX_PREFIX_EXPANSIONS) break;
+            addBm25(termScores, e.getValue(), PREFIX_MATCH_WEIGHT, docCount, avgDocLength);
+        }
+
+        if (termScores.isEmpty()) {
+            int maxDistance = maxEditDistance(queryTerm);
+            for (Map.Entry<String, Integer> candidate : fuzzyCandidates(queryTerm, maxDistance)) {
+                Map<Long, Float> posting = postings.get(candidate.getKey());
+                if (posting == null) continue;
+                double weight = FUZZY_MATCH_WEIGHT / candidate.getValue();
+                addBm25(termScores, posting, weight, docCount, avgDocLength);
+            }
+        }
+        return termScores;
+    }
+
+//    words within maxDistance edits of the query word, closest first, as (word, distance)
+//    only words sharing enough trigrams are compared, so this does not scan the whole vocabulary
+    private List<Map.Entry<String, Integer>> fuzzyCandidates(String queryTerm, int maxDistance) {
+        if (maxDistance == 0) return List.of();
+
+        Set<String> grams = SearchTextHelper.trigrams(queryTerm);
+        // an insert, delete or substitution destroys at most 3 trigrams of the padded word,
+        // a swap of two neighbours (allowed by the OSA distance) up to 4: "lorael" and "loreal" share only 2
+        int minShared = Math.max(1, grams.size() - TRIGRAMS_PER_EDIT * maxDistance);
+
+        Map<String, Integer> shared = new HashMap<>();
+        for (String gram : grams) {
+            Set<String> terms = termsOfTrigram.get(gram);
+            if (terms == null) continue;
+            for (String term : terms) shared.merge(term, 1, Integer::sum);
+        }
+
+        List<Map.Entry<String, Integer>> matches = new ArrayList<>();
+        for (Map.Entry<String, Integer> e : shared.entrySet()) {
+            if (e.getValue() < minShared) continue;
+            int distance = SearchTextHelper.editDistance(queryTerm, e.getKey(), maxDistance);
+            if (distance <= maxDistance) matches.add(Map.entry(e.getKey(), distance));
+        }
+        matches.sort(Map.Entry.<String, Integer>comparingByValue().thenComparing(Map.Entry.comparingByKey()));
+        return matches.size() > MAX_FUZZY_EXPANSIONS ? matches.subList(0, MAX_FUZZY_EXPANSIONS) : matches;
+    }
+
+    private int maxEditDistance(String term) {
+        if (term.length() < MIN_FUZZY_TERM_LENGTH) return 0;
+        return term.length() <= 6 ? 1 : 2;
+    }
+
+    private void addBm25(Map<Long, Double> termScores, Map<Long, Float> posting, double weight,
+                         int docCount, double avgDocLength) {
+        int df = posting.size();
+        double idf = Math.log(1 + (docCount - df + 0.5) / (df + 0.5));
+        for (Map.Entry<Long, Float> p : posting.entrySet()) {
+            double tf = p.getValue();
+            double dl = docLengths.getOrDefault(p.getKey(), 0f);
+            double score = idf * (tf * (K1 + 1)) / (tf + K1 * (1 - B + B * dl / avgDocLength));
+            // a product matching through several prefix expansions keeps its best one
+            termScores.merge(p.getKey(), weight * score, Math::max);
+        }
+    }
+
+    private void index(CatalogSnapshot snapshot, CatalogEntry entry) {
+        String brandName = snapshot.brand(entry.brandSlug()).map(BrandResponse::name).orElse(entry.brandSlug());
+        String categoryName = snapshot.category(entry.categorySlug()).map(CategoryResponse::name).orElse(entry.categorySlug());
+        List<String> tagNames = entry.tagSlugs().stream()
+                .map(tagSlug -> snapshot.tag(tagSlug).map(TagResponse::name).orElse(tagSlug))
+                .toList();
+
+        Map<String, Float> termFrequencies = new HashMap<>();
+        float length = 0;
+        length += addField(termFrequencies, entry.brief().title(), TITLE_WEIGHT);
+        length += addField(termFrequencies, entry.slug(), SLUG_WEIGHT);
+        length += addField(termFrequencies, entry.brief().shortDescription(), SHORT_DESCRIPTION_WEIGHT);
+        length += addField(termFrequencies, entry.description(), DESCRIPTION_WEIGHT);
+        length += addField(termFrequencies, brandName, TAXONOMY_WEIGHT);
+        length += addField(termFrequencies, categoryName, TAXONOMY_WEIGHT);
+        for (String tagName : tagNames) {
+            length += addField(termFrequencies, tagName, TAXONOMY_WEIGHT);
+        }
+
+        termFrequencies.forEach((term, tf) -> postings.computeIfAbsent(term, k -> new HashMap<>()).put(entry.id(), tf));
+        termsOfProduct.put(entry.id(), termFrequencies.keySet());
+        docLengths.put(entry.id(), length);
+        totalDocLength += length;
+
+        Set<String> fuzzyTerms = new HashSet<>(SearchTextHelper.tokenize(entry.brief().title()));
+        fuzzyTerms.addAll(SearchTextHelper.tokenize(brandName));
+        fuzzyTerms.addAll(SearchTextHelper.tokenize(categoryName));
+        tagNames.forEach(tagName -> fuzzyTerms.addAll(SearchTextHelper.tokenize(tagName)));
+        for (String term : fuzzyTerms) {
+            if (fuzzyTermRefs.merge(term, 1, Integer::sum) == 1) {
+                SearchTextHelper.trigrams(term).forEach(gram -> termsOfTrigram.computeIfAbsent(gram, k -> new HashSet<>()).add(term));
+            }
+        }
+        fuzzyTermsOfProduct.put(entry.id(), fuzzyTerms);
+    }
+
+    private float addField(Map<String, Float> termFrequencies, String text, float weight) {
+        List<String> tokens = SearchTextHelper.tokenize(text);
+        tokens.forEach(token -> termFrequencies.merge(token, weight, Float::sum));
+        return tokens.size() * weight;
+    }
+
+    private void remove(Long productId) {
+        Set<String> terms = termsOfProduct.remove(productId);
+        if (terms == null) return;
+        for (String term : terms) {
+            Map<Long, Float> posting = postings.get(term);
+            if (posting == null) continue;
+            posting.remove(productId);
+            if (posting.isEmpty()) postings.remove(term);
+        }
+        Float length = docLengths.remove(productId);
+        if (length != null) totalDocLength -= length;
+
+        Set<String> fuzzyTerms = fuzzyTermsOfProduct.remove(productId);
+        if (fuzzyTerms == null) return;
+        for (String term : fuzzyTerms) {
+            if (fuzzyTermRefs.merge(term, -1, Integer::sum) > 0) continue;
+            fuzzyTermRefs.remove(term);
+            for (String gram : SearchTextHelper.trigrams(term)) {
+                Set<String> gramTerms = termsOfTrigram.get(gram);
+                if (gramTerms == null) continue;
+                gramTerms.remove(term);
+                if (gramTerms.isEmpty()) termsOfTrigram.remove(gram);
+            }
+        }
+    }
+}
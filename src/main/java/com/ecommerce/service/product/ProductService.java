@@ -1,137 +1,147 @@
 package com.ecommerce.service.product;
 
+import com.ecommerce.dto.intermediate.HomeFeed;
+import com.ecommerce.dto.intermediate.ProductCardRow;
 import com.ecommerce.dto.response.product.*;
 import com.ecommerce.exception.ApplicationException;
 import com.ecommerce.mapper.product.*;
-import com.ecommerce.model.activity.ActivityType;
-import com.ecommerce.model.activity.UserActivity;
-import com.ecommerce.model.product.BrandModel;
-import com.ecommerce.model.product.CategoryModel;
+import com.ecommerce.model.product.PriceBand;
 import com.ecommerce.model.product.ProductModel;
-import com.ecommerce.model.product.TagModel;
+import com.ecommerce.model.product.ProductSortType;
 import com.ecommerce.model.user.UserPrincipal;
-import com.ecommerce.redis.RedisService;
-import com.ecommerce.repository.activity.UserActivityRepository;
-import com.ecommerce.repository.product.BrandRepository;
-import com.ecommerce.repository.product.CategoryRepository;
 import com.ecommerce.repository.product.ProductRepository;
-import com.ecommerce.repository.product.TagRepository;
-import com.ecommerce.service.recommendation.RecommendationService;
-import com.ecommerce.service.recommendation.SimilarUserUpdater;
-import com.ecommerce.service.recommendation.UserActivityService;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.PersistenceContext;
-import jakarta.persistence.criteria.*;
+import com.ecommerce.service.recommendation.HomeFeedUpdater;
+import com.ecommerce.service.recommendation.SimilarityRecomputeScheduler;
+import com.ecommerce.service.recommendation.ItemSimilarityIndex;
+import com.ecommerce.service.recommendation.PopularityRanking;
+import com.ecommerce.service.recommendation.ViewEventPipeline;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @RequiredArgsConstructor
 @Service
 public class ProductService {
 
-    private final TagRepository tagRepository;
-    private final BrandRepository brandRepository;
-    private final CategoryRepository categoryRepository;
     private final ProductRepository productRepository;
-    private final RedisService redisService;
-    private final UserActivityService userActivityService;
+    private final ViewEventPipeline viewEventPipeline;
     private final TagMapper tagMapper;
-    private final ProductMapper productMapper;
     private final BrandMapper brandMapper;
     private final CategoryMapper categoryMapper;
     private final ProductImageMapper productImageMapper;
-    private final SimilarUserUpdater similarUserUpdater;
-    private final RecommendationService recommendationService;
-    private final UserActivityRepository userActivityRepository;
+    private final HomeFeedUpdater homeFeedUpdater;
+    private final SimilarityRecomputeScheduler similarityRecomputeScheduler;
+    private final ItemSimilarityIndex itemSimilarityIndex;
+    private final PopularityRanking popularityRanking;
+    private final CatalogCache catalogCache;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductSuggestionIndex productSuggestionIndex;
+    private final ProductFacetIndex productFacetIndex;
 
-    @PersistenceContext
-    private EntityManager em;
+    private static final int SEARCHED_PRODUCTS_LIMIT = 15;
+    private static final int POPULAR_COUNT = 8;
 
 
+    public long getCatalogFingerprint(){
+        return catalogCache.snapshot().fingerprint();
+    }
+
     public List<TagResponse> getAllTags(){
-        List<TagModel> tagModels = tagRepository.findAll();
-        return tagModels.stream()
-                .map(tagMapper::mapEntityToTagResponse)
-                .toList();
+        return catalogCache.snapshot().tags();
     }
 
     public ProductsFromTagResponse getProductsOfTag(String tagSlug) {
-        List<ProductModel> products = productRepository.findAllWithImageFromTagSlug(tagSlug);
+        CatalogSnapshot catalog = catalogCache.snapshot();
+        List<BriefProductsResponse> productsResponses = catalog.productsOfTag(tagSlug);
 
-        if(products.isEmpty()){
+        if(productsResponses.isEmpty()){
             throw new ApplicationException("Product not found!", "NOT_FOUND", HttpStatus.NOT_FOUND);
         }
 
-        TagModel tagModel = products.get(0).getTags()
-                .stream().filter(tag-> tag.getSlug().equals(tagSlug))
-                .findFirst().orElseThrow(()->
+        TagResponse tagResponse = catalog.tag(tagSlug).orElseThrow(()->
                         new ApplicationException("Tag not found!", "TAG_NOT_FOUND", HttpStatus.NOT_FOUND));
 
-        TagResponse tagResponse = tagMapper.mapEntityToTagResponse(tagModel);
-
-        List<BriefProductsResponse> productsResponses = products.stream()
-                .map(productMapper::mapEntityToBriefProductsResponse)
-                .toList();
-
         return new ProductsFromTagResponse(tagResponse, productsResponses);
     }
 
     public List<BrandResponse> getAllBrands() {
-        List<BrandModel> brands = brandRepository.findAll();
-        return brands.stream()
-                .map(brandMapper::mapEntityToBrandResponse)
-                .toList();
+        return catalogCache.snapshot().brands();
     }
 
     public ProductsFromBrandResponse getProductsOfBrand(String brandSlug) {
-        List<ProductModel> products= productRepository.findAllWithImageFromBrandSlug(brandSlug);
+        CatalogSnapshot catalog = catalogCache.snapshot();
+        List<BriefProductsResponse> productsResponse = catalog.productsOfBrand(brandSlug);
 
-        if(products.isEmpty()){
+        if(productsResponse.isEmpty()){
             throw new ApplicationException("Products not found!", "PRODUCT_NOT_FOUND", HttpStatus.NOT_FOUND);
         }
 
-        BrandModel brandModel= products.get(0).getBrand();
-        BrandResponse brandResponse = brandMapper.mapEntityToBrandResponse(brandModel);
-
-        List<BriefProductsResponse> productsResponse = products.stream()
-                .map(productMapper::mapEntityToBriefProductsResponse)
-                .toList();
+        BrandResponse brandResponse = catalog.brand(brandSlug).orElseThrow(()->
+                new ApplicationException("Brand not found!", "BRAND_NOT_FOUND", HttpStatus.NOT_FOUND));
         return new ProductsFromBrandResponse(brandResponse, productsResponse);
     }
 
     public List<CategoryResponse> getAllCategories() {
-        List<CategoryModel> categories = categoryRepository.findAll();
-        return categories.stream()
-                .map(categoryMapper::mapEntityToCategoryResponse)
-                .toList();
+        return catalogCache.snapshot().categories();
     }
 
     public ProductsFromCategoryResponse getProductsOfCategory(String categorySlug) {
-        List<ProductModel> products = productRepository.findAllWithImageFromCategorySlug(categorySlug);
-        if(products.isEmpty())
+        CatalogSnapshot catalog = catalogCache.snapshot();
+        List<BriefProductsResponse> productsResponse = catalog.productsOfCategory(categorySlug);
+        if(productsResponse.isEmpty())
             throw new ApplicationException("Products not found!", "PRODUCT_NOT_FOUND", HttpStatus.NOT_FOUND);
-        CategoryModel categoryModel = products.get(0).getCategory();
-        CategoryResponse categoryResponse = categoryMapper.mapEntityToCategoryResponse(categoryModel);
-        List<BriefProductsResponse> productsResponse = products.stream()
-                .map(productMapper::mapEntityToBriefProductsResponse)
-                .toList();
+        CategoryResponse categoryResponse = catalog.category(categorySlug).orElseThrow(()->
+                new ApplicationException("Category not found!", "CATEGORY_NOT_FOUND", HttpStatus.NOT_FOUND));
         return new ProductsFromCategoryResponse(categoryResponse, productsResponse);
     }
 
     public List<BriefProductsResponse> getAllProducts() {
-        List<ProductModel> products = productRepository.findAllProductsWithImages();
+        List<BriefProductsResponse> products = catalogCache.snapshot().allProducts();
         if(products.isEmpty())
             throw new ApplicationException("No products found!", "PRODUCT_NOT_FOUND", HttpStatus.NOT_FOUND);
 
-        return products.stream()
-                .map(productMapper::mapEntityToBriefProductsResponse)
-                .toList();
+        return products;
+    }
+
+    public ProductPageResponse getProductPage(ProductSortType sort, String cursor, int size) {
+        PageRequest limit = PageRequest.ofSize(size + 1);
+        List<ProductCardRow> page;
+        if(cursor == null || cursor.isBlank()){
+            page = switch (sort) {
+                case NEWEST -> productRepository.findCardPageByNewest(limit);
+                case PRICE_ASC -> productRepository.findCardPageByPriceAsc(limit);
+                case PRICE_DESC -> productRepository.findCardPageByPriceDesc(limit);
+            };
+        }else{
+            String[] parts = decodeCursor(cursor);
+            Long lastId;
+            LocalDateTime lastCreatedAt = null;
+            BigDecimal lastPrice = null;
+            try{
+                lastId = Long.parseLong(parts[1]);
+                if(sort == ProductSortType.NEWEST) lastCreatedAt = LocalDateTime.parse(parts[0]);
+                else lastPrice = new BigDecimal(parts[0]);
+            }catch (RuntimeException e){
+                throw new ApplicationException("Invalid cursor!", "INVALID_CURSOR", HttpStatus.BAD_REQUEST);
+            }
+            page = switch (sort) {
+                case NEWEST -> productRepository.findCardPageByNewestAfter(lastCreatedAt, lastId, limit);
+                case PRICE_ASC -> productRepository.findCardPageByPriceAscAfter(lastPrice, lastId, limit);
+                case PRICE_DESC -> productRepository.findCardPageByPriceDescAfter(lastPrice, lastId, limit);
+            };
+        }
+
+        boolean hasMore = page.size() > size;
+        List<ProductCardRow> rows = hasMore ? page.subList(0, size) : page;
+        String nextCursor = hasMore ? encodeCursor(sort, rows.get(rows.size() - 1)) : null;
+        return new ProductPageResponse(rows.stream().map(ProductCardRow::toBrief).toList(), nextCursor, hasMore);
     }
 
     public SingleProductResponse getDetailOfProduct(UserPrincipal currentUser, Long id) {
@@ -140,9 +150,7 @@ public class ProductService {
 
         if(currentUser != null && !currentUser.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_ADMIN"))){
             Long userId = currentUser.getUser().getId();
-            userActivityService.recordActivity(userId, id, ActivityType.VIEW, 1);
-            redisService.updateViewedProduct(userId, id);
-            similarUserUpdater.updateSimilarUsersAsync(userId);
+            viewEventPipeline.record(userId, id);
         }
 
         return new SingleProductResponse(
@@ -161,145 +169,115 @@ public class ProductService {
                         .toList(),
                 product.getImages().stream()
                         .map(productImageMapper::mapEntityToProductImageResponse)
-                        .toList()
+                        .toList(),
+                catalogCache.snapshot().briefsOf(similarProductIds(product))
         );
     }
 
-    public List<BriefProductsResponse> getSearchedProducts(String query) {
-
-        List<String> keywords = Arrays.stream(
-                            query.toLowerCase()
-                                    .replaceAll("\\s*%\\s*", "%")
-                                    .trim()
-                                    .split("\\s+")
-                    )
-                    .filter(w -> w.length() > 1)
-                    .toList();
-
-        List<ProductModel> products = searchProducts(keywords);
-
-        return products.stream()
-                .map(productMapper::mapEntityToBriefProductsResponse)
+//    item-item neighbours, popular products of the same category while the product has none yet
+    private List<Long> similarProductIds(ProductModel product) {
+        List<Long> similar = itemSimilarityIndex.similarProductIds(product.getId());
+        if (!similar.isEmpty() || product.getCategory() == null) return similar;
+        return popularityRanking.popularProductIdsInCategory(product.getCategory().getSlug(), POPULAR_COUNT + 1).stream()
+                .filter(productId -> !productId.equals(product.getId()))
+                .limit(POPULAR_COUNT)
                 .toList();
     }
 
-    private List<ProductModel> searchProducts(List<String> keywords) {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<ProductModel> cq = cb.createQuery(ProductModel.class);
-        Root<ProductModel> product = cq.from(ProductModel.class);
-
-        Join<ProductModel, TagModel> tagJoin = product.join("tags", JoinType.LEFT);
-        Join<ProductModel, BrandModel> brandJoin = product.join("brand", JoinType.LEFT);
-        Join<ProductModel, CategoryModel> categoryJoin = product.join("category", JoinType.LEFT);
-
-        List<Predicate> keywordPredicates = new ArrayList<>();
-
-        for (String word : keywords) {
-            String pattern = "%" + word.toLowerCase() + "%";
-
-            keywordPredicates.add(
-                    cb.or(
-                            cb.like(cb.lower(product.get("title")), pattern),
-                            cb.like(cb.lower(product.get("slug")), pattern),
-                            cb.like(cb.lower(product.get("shortDescription")), pattern),
-                            cb.like(cb.lower(product.get("description")), pattern),
-                            cb.like(cb.lower(tagJoin.get("name")), pattern),
-                            cb.like(cb.lower(brandJoin.get("name")), pattern),
-                            cb.like(cb.lower(categoryJoin.get("name")), pattern)
-                    )
-            );
-        }
+    public List<BriefProductsResponse> getSearchedProducts(String query) {
+        return searchProducts(query, 0, SEARCHED_PRODUCTS_LIMIT).products();
+    }
+
+//    ranked search served from ProductSearchIndex, no db query
+    public ProductSearchResponse searchProducts(String query, int page, int size) {
+        ProductSearchIndex.SearchHits hits = productSearchIndex.search(query, page * size, size);
+        List<BriefProductsResponse> products = catalogCache.snapshot().briefsOf(hits.productIds());
+        return new ProductSearchResponse(products, page, size, hits.totalHits());
+    }
 
-        cq.where(cb.and(keywordPredicates.toArray(new Predicate[0])))
-                .distinct(true);
+//    combined filters resolved on bitmaps from ProductFacetIndex, no db query
+    public FacetedProductsResponse getFacetedProducts(List<String> brands, List<String> categories, List<String> tags,
+                                                      List<PriceBand> priceBands, Boolean inStock, int page, int size) {
+        Map<String, List<String>> selected = new HashMap<>();
+        selected.put(ProductFacetIndex.BRAND, brands);
+        selected.put(ProductFacetIndex.CATEGORY, categories);
+        selected.put(ProductFacetIndex.TAG, tags);
+        if(priceBands != null)
+            selected.put(ProductFacetIndex.PRICE, priceBands.stream().map(PriceBand::name).toList());
+        if(inStock != null)
+            selected.put(ProductFacetIndex.STOCK, List.of(inStock ? ProductFacetIndex.IN_STOCK : ProductFacetIndex.OUT_OF_STOCK));
+
+        ProductFacetIndex.FacetResult result = productFacetIndex.filter(selected, page * size, size);
+        List<BriefProductsResponse> products = catalogCache.snapshot().briefsOf(result.productIds());
+        return new FacetedProductsResponse(products, result.totalHits(), result.facets());
+    }
 
-        return em.createQuery(cq)
-                .setMaxResults(15)
-                .getResultList();
+    public List<SuggestionResponse> getSuggestions(String query, int limit) {
+        return productSuggestionIndex.suggest(query, limit);
     }
 
     public Map<String, List<BriefProductsResponse>> getAllProductsWithPersonalization(Long userId) {
+        HomeFeed feed = homeFeedUpdater.getHomeFeed(userId).orElseGet(() -> {
+            similarityRecomputeScheduler.markDirty(userId);
+            return HomeFeed.EMPTY;
+        });
+        CatalogSnapshot snapshot = catalogCache.snapshot();
+
         Map<String, List<BriefProductsResponse>> response = new HashMap<>();
         Set<Long> excludedIds = new HashSet<>();
-
-//        Recommendation
-        List<BriefProductsResponse> recommendedProducts = recommendationService.getPersonalizedRecommendation(userId);
-        if(!recommendedProducts.isEmpty()){
-            response.put("recommendedProducts", recommendedProducts);
-            recommendedProducts.stream().map(BriefProductsResponse::id).forEach(excludedIds::add);
-        }
-
-        List<UserActivity> activityList = userActivityRepository.findByUserId(userId);
-        if(!activityList.isEmpty()){
-//            purchase again
-            Set<Long> purchasedIds = activityList.stream()
-                    .filter(a -> a.getActivityType() == ActivityType.PURCHASE && a.getScore()>=0)
-                    .map(UserActivity::getProductId)
-                    .collect(Collectors.toSet());
-            if(!purchasedIds.isEmpty()){
-                List<BriefProductsResponse> purchasedProducts = productRepository.findAllByIdIn(new ArrayList<>(purchasedIds))
-                        .stream().map(productMapper::mapEntityToBriefProductsResponse).toList();
-                response.put("purchasedProducts", purchasedProducts);
-                excludedIds.addAll(purchasedIds);
-            }
-
-//            continue with following products
-            LocalDateTime threeDaysAgo = LocalDateTime.now().minusDays(3);
-            Set<Long> cartAndViewedIds = activityList.stream()
-                    .filter(a-> a.getScore()>=0)
-                    .filter(a->{
-                        if(a.getActivityType() == ActivityType.CART_ADD){
-                            return true;
-                        }
-                        if (a.getActivityType() == ActivityType.VIEW) {
-                            return a.getUpdatedAt() != null && a.getUpdatedAt().isAfter(threeDaysAgo);
-                        }
-                        return false;
-                    })
-                    .sorted((a1, a2) -> {
-                        if (a1.getUpdatedAt() == null || a2.getUpdatedAt() == null) return 0;
-                        return a2.getUpdatedAt().compareTo(a1.getUpdatedAt());
-                    })
-                    .map(UserActivity::getProductId)
-                    .filter(productId -> !purchasedIds.contains(productId))
-                    .collect(Collectors.toSet());
-
-            if(!cartAndViewedIds.isEmpty()){
-                List<BriefProductsResponse> cartAndViewedProducts = productRepository.findAllByIdIn(new ArrayList<>(cartAndViewedIds))
-                        .stream().map(productMapper::mapEntityToBriefProductsResponse).toList();
-                response.put("cartAndViewed", cartAndViewedProducts);
-                excludedIds.addAll(cartAndViewedIds);
-            }
-
-        }
-
-        if(excludedIds.isEmpty()){
-            List<BriefProductsResponse> products = getAllProducts();
-            return Map.of("products", products);
+        if(feed.recommendedIds().isEmpty()){
+//            cold start: no similar users yet, show what everyone engaged with lately
+            putSection(response, "popularProducts", snapshot.briefsOf(popularityRanking.popularProductIds(POPULAR_COUNT)), excludedIds);
+        }else{
+            putSection(response, "recommendedProducts", snapshot.briefsOf(feed.recommendedIds()), excludedIds);
         }
+        putSection(response, "purchasedProducts", snapshot.briefsOf(feed.purchasedIds()), excludedIds);
+        putSection(response, "cartAndViewed", snapshot.briefsOf(feed.cartAndViewedIds()), excludedIds);
 
 //        all products
-        List<BriefProductsResponse> products = productRepository.findAllByIdNotIn(new ArrayList<>(excludedIds))
-                .stream()
-                .map(productMapper::mapEntityToBriefProductsResponse)
+        List<BriefProductsResponse> products = snapshot.allProducts().stream()
+                .filter(p -> !excludedIds.contains(p.id()))
                 .toList();
-
         response.put("products", products);
 
         return response;
     }
 
+    private void putSection(Map<String, List<BriefProductsResponse>> response, String section,
+                            List<BriefProductsResponse> products, Set<Long> excludedIds) {
+        if(products.isEmpty()) return;
+        response.put(section, products);
+        products.stream().map(BriefProductsResponse::id).forEach(excludedIds::add);
+    }
+
     public List<BriefProductsResponse> getNewArrivedProducts() {
-        return productRepository.findAllWithImageFromTagSlug("new-arrival").stream()
+        return catalogCache.snapshot().productsOfTag("new-arrival").stream()
                 .limit(4)
-                .map(productMapper::mapEntityToBriefProductsResponse)
                 .toList();
     }
 
     public List<BriefProductsResponse> getBestSeller() {
-        return productRepository.findAllWithImageFromTagSlug("best-seller").stream()
+        return catalogCache.snapshot().productsOfTag("best-seller").stream()
                 .limit(4)
-                .map(productMapper::mapEntityToBriefProductsResponse)
                 .toList();
     }
-}
\ No newline at end of file
+
+//    cursor is "<sort key>|<id>" of the last row, base64 so clients treat it as opaque
+    private String encodeCursor(ProductSortType sort, ProductCardRow last) {
+        String key = (sort == ProductSortType.NEWEST)
+                ? last.createdAt().toString()
+                : last.price().toPlainString();
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((key + "|" + last.id()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String[] decodeCursor(String cursor) {
+        try{
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            if(parts.length != 2) throw new IllegalArgumentException();
+            return parts;
+        }catch (IllegalArgumentException e){
+            throw new ApplicationException("Invalid cursor!", "INVALID_CURSOR", HttpStatus.BAD_REQUEST);
+        }
+    }
+}
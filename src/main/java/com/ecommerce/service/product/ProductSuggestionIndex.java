@@ -0,0 +1,215 @@
+package com.ecommerce.service.product;
+
+import com.ecommerce.dto.intermediate.ProductPopularity;
+import com.ecommerce.dto.response.product.BrandResponse;
+import com.ecommerce.dto.response.product.CategoryResponse;
+import com.ecommerce.dto.response.product.SuggestionResponse;
+import com.ecommerce.dto.response.product.TagResponse;
+import com.ecommerce.model.product.SuggestionType;
+import com.ecommerce.redis.RedisService;
+import com.ecommerce.repository.activity.UserActivityRepository;
+import com.ecommerce.service.product.CatalogSnapshot.CatalogEntry;
+import com.ecommerce.service.recommendation.PopularityWindowRefreshed;
+import com.ecommerce.utils.SearchTextHelper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+// typeahead over product titles, brand, category and tag names
+// every word start of a name is a key in one sorted array, so a prefix lookup is a binary search + short scan
+// the table is immutable, rebuilt off the request thread when a name changes (stock and price edits are skipped)
+// and whenever the popularity window is refreshed, so the weights follow the last days of activity
+@Slf4j
+@Component
+public class ProductSuggestionIndex implements CatalogListener {
+
+    private record Suggestion(SuggestionResponse response, double weight) {}
+
+    private record SuggestionTable(String[] keys, int[] suggestionOf, Suggestion[] suggestions) {}
+
+    private static final SuggestionTable EMPTY = new SuggestionTable(new String[0], new int[0], new Suggestion[0]);
+
+//    taxonomy names are a bit ahead of single products with the same popularity
+    private static final double TAXONOMY_BOOST = 1.5;
+
+    private final UserActivityRepository userActivityRepository;
+    private final RedisService redisService;
+    private final CoalescedRebuild rebuilds;
+
+    private volatile SuggestionTable table = EMPTY;
+    private volatile Map<Long, Double> popularity = Map.of();
+    // last snapshot handed to this index, changed entries are compared against it
+    private volatile CatalogSnapshot current;
+
+    public ProductSuggestionIndex(UserActivityRepository userActivityRepository, RedisService redisService,
+                                  TaskExecutor taskExecutor) {
+        this.userActivityRepository = userActivityRepository;
+        this.redisService = redisService;
+        this.rebuilds = new CoalescedRebuild("suggestion index", taskExecutor, this::rebuild);
+    }
+
+    @Override
+    public void onCatalogLoaded(CatalogSnapshot snapshot) {
+        Map<Long, Double> scores = windowScores();
+        // right after a deploy the window can still be empty, all time activity is better than no weights
+        if (scores.isEmpty()) {
+            for (ProductPopularity p : userActivityRepository.sumScoreGroupByProduct()) {
+                if (p.score() != null && p.score() > 0) scores.put(p.productId(), p.score().doubleValue());
+            }
+        }
+        popularity = scores;
+        current = snapshot;
+        rebuilds.now(snapshot);
+        log.info("Suggestion index built with {} keys", table.keys().length);
+    }
+
+    @Override
+    public void onProductsChanged(CatalogSnapshot snapshot, Collection<CatalogEntry> changed) {
+        CatalogSnapshot before = current;
+        current = snapshot;
+        if (before == null || changed.stream().anyMatch(entry -> namesChanged(before, entry))) {
+            rebuilds.request(snapshot);
+        }
+    }
+
+    @Override
+    public void onTaxonomyChanged(CatalogSnapshot snapshot) {
+        current = snapshot;
+        rebuilds.request(snapshot);
+    }
+
+    @EventListener
+    public void onPopularityRefreshed(PopularityWindowRefreshed event) {
+        Map<Long, Double> scores = windowScores();
+        CatalogSnapshot snapshot = current;
+        if (scores.isEmpty() || snapshot == null) return;
+        popularity = scores;
+        rebuilds.request(snapshot);
+    }
+
+    public List<SuggestionResponse> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty()) return List.of();
+
+        SuggestionTable current = table;
+        String[] keys = current.keys();
+        int from = lowerBound(keys, key);
+
+        // best suggestions first, each suggestion only once even if several of its words match
+        PriorityQueue<Suggestion> top = new PriorityQueue<>(Comparator.comparingDouble(Suggestion::weight));
+        Set<Integer> seen = new HashSet<>();
+        for (int i = from; i < keys.length && keys[i].startsWith(key); i++) {
+            int idx = current.suggestionOf()[i];
+            if (!seen.add(idx)) continue;
+            Suggestion s = current.suggestions()[idx];
+            if (top.size() < limit) {
+                top.add(s);
+            } else if (s.weight() > top.peek().weight()) {
+                top.poll();
+                top.add(s);
+            }
+        }
+
+        List<Suggestion> result = new ArrayList<>(top);
+        result.sort(Comparator.comparingDouble(Suggestion::weight).reversed());
+        return result.stream().map(Suggestion::response).toList();
+    }
+
+//    helpers
+    private void rebuild(CatalogSnapshot snapshot) {
+        Map<Long, Double> scores = popularity;
+        List<Suggestion> suggestions = new ArrayList<>();
+        Map<String, Double> brandWeight = new HashMap<>();
+        Map<String, Double> categoryWeight = new HashMap<>();
+        Map<String, Double> tagWeight = new HashMap<>();
+
+        for (CatalogEntry entry : snapshot.entries()) {
+            double weight = productWeight(scores.getOrDefault(entry.id(), 0.0));
+            suggestions.add(new Suggestion(
+                    new SuggestionResponse(entry.brief().title(), SuggestionType.PRODUCT, entry.slug(), entry.id()), weight));
+            if (entry.brandSlug() != null) brandWeight.merge(entry.brandSlug(), weight, Double::sum);
+            if (entry.categorySlug() != null) categoryWeight.merge(entry.categorySlug(), weight, Double::sum);
+            entry.tagSlugs().forEach(slug -> tagWeight.merge(slug, weight, Double::sum));
+        }
+        for (BrandResponse brand : snapshot.brands()) {
+            suggestions.add(new Suggestion(new SuggestionResponse(brand.name(), SuggestionType.BRAND, brand.slug(), null),
+                    TAXONOMY_BOOST * brandWeight.getOrDefault(brand.slug(), 0.0)));
+        }
+        for (CategoryResponse category : snapshot.categories()) {
+            suggestions.add(new Suggestion(new SuggestionResponse(category.name(), SuggestionType.CATEGORY, category.slug(), null),
+                    TAXONOMY_BOOST * categoryWeight.getOrDefault(category.slug(), 0.0)));
+        }
+        for (TagResponse tag : snapshot.tags()) {
+            suggestions.add(new Suggestion(new SuggestionResponse(tag.name(), SuggestionType.TAG, tag.slug(), null),
+                    TAXONOMY_BOOST * tagWeight.getOrDefault(tag.slug(), 0.0)));
+        }
+
+        // one key per word start: "beardo beard wash" -> "beardo beard wash", "beard wash", "wash"
+        List<Map.Entry<String, Integer>> keyed = new ArrayList<>();
+        for (int i = 0; i < suggestions.size(); i++) {
+            List<String> tokens = SearchTextHelper.tokenize(suggestions.get(i).response().text());
+            for (int start = 0; start < tokens.size(); start++) {
+                keyed.add(Map.entry(String.join(" ", tokens.subList(start, tokens.size())), i));
+            }
+        }
+        keyed.sort(Map.Entry.comparingByKey());
+
+        String[] keys = new String[keyed.size()];
+        int[] suggestionOf = new int[keyed.size()];
+        for (int i = 0; i < keyed.size(); i++) {
+            keys[i] = keyed.get(i).getKey();
+            suggestionOf[i] = keyed.get(i).getValue();
+        }
+        table = new SuggestionTable(keys, suggestionOf, suggestions.toArray(new Suggestion[0]));
+    }
+
+    private double productWeight(double popularityScore) {
+        return 1 + Math.log1p(popularityScore);
+    }
+
+//    only what ends up in a key or a weight matters, stock and price edits leave the table as it is
+    private boolean namesChanged(CatalogSnapshot before, CatalogEntry entry) {
+        return before.product(entry.id())
+                .map(old -> !Objects.equals(old.brief().title(), entry.brief().title())
+                        || !Objects.equals(old.slug(), entry.slug())
+                        || !Objects.equals(old.brandSlug(), entry.brandSlug())
+                        || !Objects.equals(old.categorySlug(), entry.categorySlug())
+                        || !old.tagSlugs().equals(entry.tagSlugs()))
+                .orElse(true);
+    }
+
+    private Map<Long, Double> windowScores() {
+        try {
+            return redisService.getPopularityScores();
+        } catch (Exception e) {
+            log.warn("Failed to read the popularity window", e);
+            return new HashMap<>();
+        }
+    }
+
+    private String normalize(String text) {
+        String joined = String.join(" ", SearchTextHelper.tokenize(text));
+        // keep a trailing single character the user is still typing ("garnier h")
+        if (text != null && !text.isBlank()) {
+            String trimmed = text.trim().toLowerCase();
+            char last = trimmed.charAt(trimmed.length() - 1);
+            boolean lonelyLastChar = Character.isLetterOrDigit(last)
+                    && (trimmed.length() == 1 || !Character.isLetterOrDigit(trimmed.charAt(trimmed.length() - 2)));
+            if (lonelyLastChar) joined = joined.isEmpty() ? String.valueOf(last) : joined + " " + last;
+        }
+        return joined;
+    }
+
+    private int lowerBound(String[] keys, String key) {
+        int lo = 0, hi = keys.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid].compareTo(key) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
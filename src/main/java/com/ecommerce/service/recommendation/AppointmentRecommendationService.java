@@ -1,13 +1,11 @@
 package com.ecommerce.service.recommendation;
 
 import com.ecommerce.dto.intermediate.appointment.ScoredTimeSlot;
-import com.ecommerce.dto.intermediate.appointment.TimeInterval;
+import com.ecommerce.dto.intermediate.appointment.StaffSlot;
 import com.ecommerce.dto.response.service.TimeSlotRecommendation;
 import com.ecommerce.dto.response.staff.StaffSummaryResponse;
-import com.ecommerce.model.service.*;
-import com.ecommerce.model.user.Staff;
-import com.ecommerce.repository.service.*;
-import com.ecommerce.repository.user.StaffRepository;
+import com.ecommerce.model.service.UserBookingHistory;
+import com.ecommerce.repository.service.UserBookingHistoryRepository;
 import com.ecommerce.utils.LabelHelper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -17,18 +15,12 @@ import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class AppointmentRecommendationService {
 
-    private final StaffRepository staffRepository;
-    private final ServiceRepository serviceRepository;
-    private final AppointmentRepository appointmentRepository;
-    private final StaffWorkingHoursRepository workingHoursRepository;
-    private final StaffLeaveRepository leaveRepository;
     private final UserBookingHistoryRepository historyRepository;
 
     // Scoring weights: α + β + γ = 1.0
@@ -37,74 +29,22 @@ public class AppointmentRecommendationService {
     private static final double GAMMA = 0.3; // Time Fit (Avg Time)
 
     private static final double LAMBDA = 0.05; // Decay factor for time fit
-    private static final int SLOT_INTERVAL = 15;
     private static final int MAX_SLOTS = 5;
     private static final int MAX_DAILY_APPOINTMENTS = 12;
 
-    public List<TimeSlotRecommendation> getRecommendedSlots(
-            Long userId, Long serviceId, Long preferredStaffId, LocalDate bookingDate) {
-
-        // 1. Get Service Duration
-        ServiceModel service = serviceRepository.findById(serviceId)
-                .orElseThrow(() -> new RuntimeException("Service not found"));
-        int duration = service.getDurationMinutes();
-
-        // 2. Determine Staff Pool
-        List<Staff> eligibleStaff = (preferredStaffId != null && preferredStaffId != 0)
-                ? List.of(staffRepository.findWithDetailsById(preferredStaffId).orElseThrow(() -> new RuntimeException("Staff not found")))
-                : staffRepository.findByServiceId(serviceId);
-
-        if (eligibleStaff.isEmpty()) return Collections.emptyList();
-        List<Long> staffIds = eligibleStaff.stream().map(Staff::getId).toList();
-
-        // 3. Bulk Fetch Data (Efficiency)
-        Map<Long, List<Appointment>> appointmentsMap = appointmentRepository
-                .findAllByStaffIdInAndBookingDate(staffIds, bookingDate)
-                .stream().collect(Collectors.groupingBy(a -> a.getStaff().getId()));
-
-        Map<Long, StaffWorkingHours> workingHoursMap = workingHoursRepository
-                .findAllByStaffIdInAndDayOfWeek(staffIds, bookingDate.getDayOfWeek())
-                .stream().collect(Collectors.toMap(wh -> wh.getStaff().getId(), wh -> wh));
-
-        Map<Long, StaffLeave> leavesMap = leaveRepository
-                .findAllByStaffIdInAndLeaveDate(staffIds, bookingDate)
-                .stream().collect(Collectors.toMap(l -> l.getStaff().getId(), l -> l));
-
+//    scores the free slots found by SlotEngine, so the booking page computes slots only once
+    public List<TimeSlotRecommendation> getRecommendedSlots(Long userId, LocalDate bookingDate, List<StaffSlot> freeSlots) {
+        if (freeSlots.isEmpty()) return Collections.emptyList();
         UserBookingHistory history = historyRepository.findByUserId(userId).orElse(null);
 
-        // 4. Generate & Score Slots
-        List<ScoredTimeSlot> candidateSlots = new ArrayList<>();
-        LocalTime nowBuffer = (bookingDate.equals(LocalDate.now())) ? LocalTime.now().plusMinutes(30) : null;
-
-        for (Staff staff : eligibleStaff) {
-            StaffWorkingHours wh = workingHoursMap.get(staff.getId());
-            if (wh == null || !wh.isWorkingDay()) continue;
-
-            // Combine appointments and partial leaves into blocked intervals
-            List<TimeInterval> blocked = new ArrayList<>();
-            List<Appointment> currentAppts = appointmentsMap.getOrDefault(staff.getId(), new ArrayList<>());
-            currentAppts.forEach(a -> blocked.add(new TimeInterval(a.getStartTime(), a.getEndTime())));
-
-            StaffLeave leave = leavesMap.get(staff.getId());
-            if (leave != null) {
-                if (leave.getStartTime() == null || leave.getEndTime() == null) continue; // Full day leave
-                blocked.add(new TimeInterval(leave.getStartTime(), leave.getEndTime())); // Partial leave
-            }
-
-            LocalTime current = wh.getStartTime();
-            while (!current.plusMinutes(duration).isAfter(wh.getEndTime())) {
-                LocalTime end = current.plusMinutes(duration);
-
-                if (isSlotFree(current, end, nowBuffer, blocked)) {
-                    ScoredTimeSlot slot = new ScoredTimeSlot(bookingDate, current, end, staff);
-                    calculateFullScore(slot, history, currentAppts.size());
-                    candidateSlots.add(slot);
-                }
-                current = current.plusMinutes(SLOT_INTERVAL);
-            }
+        List<ScoredTimeSlot> candidateSlots = new ArrayList<>(freeSlots.size());
+        for (StaffSlot free : freeSlots) {
+            ScoredTimeSlot slot = new ScoredTimeSlot(bookingDate, free.startTime(), free.endTime(), free.staff());
+            calculateFullScore(slot, history, free.staffAppointments());
+            candidateSlots.add(slot);
         }
 
-        // 5. Rank and Map to DTO
+        // Rank and Map to DTO
         return candidateSlots.stream()
                 .sorted(Comparator.comparingDouble(ScoredTimeSlot::getTotalScore).reversed())
                 .limit(MAX_SLOTS)
@@ -112,14 +52,6 @@ public class AppointmentRecommendationService {
                 .toList();
     }
 
-    private boolean isSlotFree(LocalTime start, LocalTime end, LocalTime buffer, List<TimeInterval> blocked) {
-        if (buffer != null && start.isBefore(buffer)) return false;
-        for (TimeInterval b : blocked) {
-            if (start.isBefore(b.end()) && end.isAfter(b.start())) return false;
-        }
-        return true;
-    }
-
     private void calculateFullScore(ScoredTimeSlot slot, UserBookingHistory history, int apptCount) {
         double pScore = calculatePreferenceScore(slot.getStartTime(), history);
         double wScore = Math.max(0, 1.0 - ((double) apptCount / MAX_DAILY_APPOINTMENTS));
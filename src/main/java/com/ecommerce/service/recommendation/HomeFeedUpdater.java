@@ -0,0 +1,80 @@
+package com.ecommerce.service.recommendation;
+
+import com.ecommerce.dto.intermediate.HomeFeed;
+import com.ecommerce.model.activity.ActivityType;
+import com.ecommerce.model.activity.UserActivity;
+import com.ecommerce.redis.RedisService;
+import com.ecommerce.repository.activity.UserActivityRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+
+// keeps a materialized home feed per user in redis
+// SimilarityRecomputeScheduler rebuilds it after the user's activity (view, cart, purchase),
+// so the home page itself only reads one key and joins the ids against the catalog cache
+// the home page never computes a feed, a user without one gets the cold start page and is queued for a recompute
+@Component
+@RequiredArgsConstructor
+public class HomeFeedUpdater {
+
+    private final UserActivityRepository userActivityRepository;
+    private final RecommendationService recommendationService;
+    private final RedisService redisService;
+
+    private static final int CONTINUE_BROWSING_DAYS = 3;
+
+//    stored feed without the views that are older than the continue browsing window by now
+    public Optional<HomeFeed> getHomeFeed(Long userId) {
+        HomeFeed feed = redisService.getHomeFeed(userId);
+        if (feed == null) return Optional.empty();
+        return Optional.of(feed.viewedSince(toEpochMillis(LocalDateTime.now().minusDays(CONTINUE_BROWSING_DAYS))));
+    }
+
+    public HomeFeed updateHomeFeed(Long userId) {
+        List<Long> recommendedIds = recommendationService.getRecommendedProductIds(userId);
+        List<UserActivity> activityList = userActivityRepository.findByUserId(userId);
+
+//        purchase again
+        Set<Long> purchasedIds = new LinkedHashSet<>();
+        activityList.stream()
+                .filter(a -> a.getActivityType() == ActivityType.PURCHASE && a.getScore() >= 0)
+                .sorted(latestFirst())
+                .map(UserActivity::getProductId)
+                .forEach(purchasedIds::add);
+
+//        continue with following products, most recent first
+        LocalDateTime since = LocalDateTime.now().minusDays(CONTINUE_BROWSING_DAYS);
+        Set<Long> cartAndViewedIds = new LinkedHashSet<>();
+        Map<Long, Long> viewedAt = new HashMap<>();
+        activityList.stream()
+                .filter(a -> a.getScore() >= 0)
+                .filter(a -> a.getActivityType() == ActivityType.CART_ADD
+                        || (a.getActivityType() == ActivityType.VIEW && a.getUpdatedAt() != null && a.getUpdatedAt().isAfter(since)))
+                .sorted(latestFirst())
+                .filter(a -> !purchasedIds.contains(a.getProductId()))
+                .forEach(a -> {
+                    // a product both viewed and in the cart stays until the cart add is gone
+                    if (cartAndViewedIds.add(a.getProductId()) && a.getActivityType() == ActivityType.VIEW) {
+                        viewedAt.put(a.getProductId(), toEpochMillis(a.getUpdatedAt()));
+                    } else if (a.getActivityType() == ActivityType.CART_ADD) {
+                        viewedAt.remove(a.getProductId());
+                    }
+                });
+
+        HomeFeed feed = new HomeFeed(recommendedIds, List.copyOf(purchasedIds), List.copyOf(cartAndViewedIds), viewedAt);
+        redisService.saveHomeFeed(userId, feed);
+        return feed;
+    }
+
+//    helpers
+    private long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private Comparator<UserActivity> latestFirst() {
+        return Comparator.comparing(UserActivity::getUpdatedAt, Comparator.nullsLast(Comparator.reverseOrder()));
+    }
+}
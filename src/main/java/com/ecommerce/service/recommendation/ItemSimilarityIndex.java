@@ -0,0 +1,150 @@
+package com.ecommerce.service.recommendation;
+
+import com.ecommerce.dto.intermediate.UserProductScore;
+import com.ecommerce.redis.RedisService;
+import com.ecommerce.repository.activity.UserActivityRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+// "customers also viewed / bought": top N similar products per product, computed offline from user_activity
+// products are vectors over users (summed activity score), similarity is their cosine
+// the table is a map of primitive long arrays in memory and a redis hash so restarts do not recompute it
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ItemSimilarityIndex {
+
+    private static final int TOP_SIMILAR_PRODUCTS = 10;
+    private static final double MIN_SIMILARITY = 0.05;
+
+    private final UserActivityRepository userActivityRepository;
+    private final RedisService redisService;
+
+    private volatile Map<Long, long[]> neighbours = Map.of();
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            Map<Long, long[]> stored = redisService.getItemNeighbours();
+            if (stored.isEmpty()) {
+                rebuild();
+            } else {
+                neighbours = stored;
+                log.info("Item similarity table loaded for {} products", stored.size());
+            }
+        } catch (Exception e) {
+            log.error("Failed to load item similarity table", e);
+        }
+    }
+
+    @Scheduled(cron = "${recommendation.item-similarity.rebuild-cron:0 30 3 * * *}")
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        Map<Long, long[]> table = compute(userActivityRepository.sumScoreGroupByUserAndProduct());
+        redisService.saveItemNeighbours(table);
+        neighbours = table;
+        log.info("Item similarity table rebuilt for {} products in {} ms", table.size(), System.currentTimeMillis() - start);
+    }
+
+//    most similar products first, empty when the product has no co-interacted products
+    public List<Long> similarProductIds(Long productId) {
+        long[] ids = neighbours.get(productId);
+        if (ids == null) return List.of();
+        List<Long> result = new ArrayList<>(ids.length);
+        for (long id : ids) result.add(id);
+        return result;
+    }
+
+//    helpers
+    private Map<Long, long[]> compute(List<UserProductScore> scores) {
+        // index users and products, keep only positive interest
+        Map<Long, Integer> userIndex = new HashMap<>();
+        Map<Long, Integer> productIndex = new HashMap<>();
+        List<Long> productIds = new ArrayList<>();
+        List<UserProductScore> positive = new ArrayList<>();
+        for (UserProductScore s : scores) {
+            if (s.score() == null || s.score() <= 0) continue;
+            positive.add(s);
+            userIndex.computeIfAbsent(s.userId(), k -> userIndex.size());
+            productIndex.computeIfAbsent(s.productId(), k -> {
+                productIds.add(k);
+                return productIds.size() - 1;
+            });
+        }
+        int users = userIndex.size();
+        int products = productIds.size();
+
+        // product rows and user rows of the same matrix (CSR both ways)
+        int[] productPtr = new int[products + 1];
+        int[] userPtr = new int[users + 1];
+        double[] norms = new double[products];
+        for (UserProductScore s : positive) {
+            productPtr[productIndex.get(s.productId()) + 1]++;
+            userPtr[userIndex.get(s.userId()) + 1]++;
+            norms[productIndex.get(s.productId())] += (double) s.score() * s.score();
+        }
+        for (int p = 0; p < products; p++) productPtr[p + 1] += productPtr[p];
+        for (int u = 0; u < users; u++) userPtr[u + 1] += userPtr[u];
+
+        int[] productUsers = new int[positive.size()];
+        float[] productWeights = new float[positive.size()];
+        int[] userProducts = new int[positive.size()];
+        float[] userWeights = new float[positive.size()];
+        int[] nextProduct = Arrays.copyOf(productPtr, products);
+        int[] nextUser = Arrays.copyOf(userPtr, users);
+        for (UserProductScore s : positive) {
+            int p = productIndex.get(s.productId());
+            int u = userIndex.get(s.userId());
+            float weight = (float) (s.score() / Math.sqrt(norms[p]));
+            productUsers[nextProduct[p]] = u;
+            productWeights[nextProduct[p]++] = weight;
+            userProducts[nextUser[u]] = p;
+            userWeights[nextUser[u]++] = weight;
+        }
+
+        // row p of P * P^T: walk the users of p, then the products of each of those users
+        Map<Long, long[]> table = new HashMap<>();
+        float[] acc = new float[products];
+        int[] touched = new int[products];
+        boolean[] seen = new boolean[products];
+        for (int p = 0; p < products; p++) {
+            int touchedCount = 0;
+            for (int i = productPtr[p]; i < productPtr[p + 1]; i++) {
+                int u = productUsers[i];
+                for (int j = userPtr[u]; j < userPtr[u + 1]; j++) {
+                    int q = userProducts[j];
+                    if (q == p) continue;
+                    if (!seen[q]) {
+                        seen[q] = true;
+                        touched[touchedCount++] = q;
+                    }
+                    acc[q] += productWeights[i] * userWeights[j];
+                }
+            }
+
+            Integer[] candidates = new Integer[touchedCount];
+            for (int i = 0; i < touchedCount; i++) candidates[i] = touched[i];
+            Arrays.sort(candidates, (a, b) -> Float.compare(acc[b], acc[a]));
+            long[] top = Arrays.stream(candidates)
+                    .filter(q -> acc[q] >= MIN_SIMILARITY)
+                    .limit(TOP_SIMILAR_PRODUCTS)
+                    .mapToLong(productIds::get)
+                    .toArray();
+            if (top.length > 0) table.put(productIds.get(p), top);
+
+            for (int i = 0; i < touchedCount; i++) {
+                acc[touched[i]] = 0;
+                seen[touched[i]] = false;
+            }
+        }
+        return table;
+    }
+}
@@ -0,0 +1,86 @@
+package com.ecommerce.service.recommendation;
+
+import com.ecommerce.dto.response.product.CategoryResponse;
+import com.ecommerce.redis.RedisService;
+import com.ecommerce.service.product.CatalogCache;
+import com.ecommerce.service.product.CatalogSnapshot;
+import com.ecommerce.service.product.CatalogSnapshot.CatalogEntry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.*;
+
+// global and per category popularity for users without recommendations (cold start)
+// purchase, cart and view scores go into one redis zset per day, the served ranking is the union of the last 7 days,
+// rebuilt every few minutes so reading it is a single ZREVRANGE
+// scores are sent once the writer's transaction commits, a rolled back order or cart change counts nothing
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PopularityRanking {
+
+    static final int WINDOW_DAYS = 7;
+
+    private final RedisService redisService;
+    private final CatalogCache catalogCache;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public void record(Long productId, double score) {
+        recordAll(Map.of(productId, score));
+    }
+
+//    one pipeline for all products of an order
+    public void recordAll(Map<Long, Double> scores) {
+        if (scores.isEmpty()) return;
+        Map<Long, Double> copy = Map.copyOf(scores);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    send(copy);
+                }
+            });
+        } else {
+            send(copy);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${recommendation.popularity.refresh-ms:300000}")
+    public void refreshWindow() {
+        List<LocalDate> days = new ArrayList<>(WINDOW_DAYS);
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < WINDOW_DAYS; i++) days.add(today.minusDays(i));
+        List<String> categories = catalogCache.snapshot().categories().stream().map(CategoryResponse::slug).toList();
+        redisService.rebuildPopularityWindow(days, categories);
+        log.debug("Popularity window rebuilt for {} categories", categories.size());
+        eventPublisher.publishEvent(new PopularityWindowRefreshed());
+    }
+
+    public List<Long> popularProductIds(int limit) {
+        return redisService.getPopularProductIds(null, limit);
+    }
+
+    public List<Long> popularProductIdsInCategory(String categorySlug, int limit) {
+        return redisService.getPopularProductIds(categorySlug, limit);
+    }
+
+//    helpers
+    private void send(Map<Long, Double> scores) {
+        CatalogSnapshot snapshot = catalogCache.snapshot();
+        Map<Long, String> categories = new HashMap<>();
+        scores.keySet().forEach(productId -> snapshot.product(productId)
+                .map(CatalogEntry::categorySlug)
+                .ifPresent(slug -> categories.put(productId, slug)));
+        try {
+            redisService.incrementPopularity(LocalDate.now(), scores, categories);
+        } catch (Exception e) {
+            log.error("Failed to record popularity of {} products", scores.size(), e);
+        }
+    }
+}
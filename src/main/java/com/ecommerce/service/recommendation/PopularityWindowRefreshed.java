@@ -0,0 +1,4 @@
+package com.ecommerce.service.recommendation;
+
+// published after PopularityRanking rebuilt "popular:window", consumers re-read the scores they weight by
+public record PopularityWindowRefreshed() {}
@@ -0,0 +1,257 @@
+package com.ecommerce.service.recommendation;
+
+import com.ecommerce.dto.response.report.SimilarityBatchReportResponse;
+import com.ecommerce.redis.RedisService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.ecommerce.service.recommendation.SimilarUserUpdater.MIN_SIMILARITY;
+import static com.ecommerce.service.recommendation.SimilarUserUpdater.TOP_SIMILAR_USERS;
+
+// periodic full rebuild of user_similar:* next to the incremental SimilarUserUpdater
+// all vectors are loaded into CSR arrays (rows = users, unit length) plus the transposed CSC arrays,
+// then row u of A * A^T (cosine of u with everybody) is accumulated sparse row by sparse row (Gustavson),
+// rows are split across a fork-join pool and only the top K of each row is kept
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SimilarUserBatchJob {
+
+    private static final int LOAD_CHUNK = 500;
+    private static final int WRITE_CHUNK = 500;
+    private static final int ROWS_PER_TASK = 256;
+
+    private final RedisService redisService;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile SimilarityBatchReportResponse lastReport;
+
+    // users x products matrix, both orientations
+    private record SparseMatrix(long[] userIds, int productCount,
+                                int[] rowPtr, int[] cols, float[] values,
+                                int[] colPtr, int[] rows, float[] colValues) {
+        int userCount() {
+            return userIds.length;
+        }
+    }
+
+    private record RowResult(int[] users, float[] scores) {}
+
+    @Scheduled(cron = "${recommendation.similarity.rebuild-cron:0 0 * * * *}")
+    public void rebuildAll() {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Similar user rebuild still running, skipping this run");
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            SparseMatrix matrix = load();
+            long loaded = System.currentTimeMillis();
+
+            RowResult[] results = new RowResult[matrix.userCount()];
+            ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(() -> new Workspace(matrix.userCount()));
+            long multiplyAdds;
+            ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+            try {
+                multiplyAdds = pool.invoke(new RowsTask(matrix, results, workspaces, 0, matrix.userCount()));
+            } finally {
+                pool.shutdown();
+            }
+            long computed = System.currentTimeMillis();
+
+            write(matrix, results);
+            long written = System.currentTimeMillis();
+
+            double seconds = Math.max(1, written - start) / 1000.0;
+            lastReport = new SimilarityBatchReportResponse(
+                    matrix.userCount(), matrix.productCount(), matrix.values().length, multiplyAdds,
+                    loaded - start, computed - loaded, written - computed,
+                    matrix.userCount() / seconds, LocalDateTime.now());
+            log.info("Similar user rebuild: {} users, {} products, {} non zeros, load {} ms, compute {} ms, write {} ms, {} users/s",
+                    matrix.userCount(), matrix.productCount(), matrix.values().length,
+                    loaded - start, computed - loaded, written - computed, String.format("%.1f", matrix.userCount() / seconds));
+        } catch (Exception e) {
+            log.error("Similar user rebuild failed", e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public SimilarityBatchReportResponse lastReport() {
+        return lastReport;
+    }
+
+//    helpers
+    private SparseMatrix load() {
+        List<Long> userIds = new ArrayList<>();
+        List<int[]> rowCols = new ArrayList<>();
+        List<float[]> rowValues = new ArrayList<>();
+        Map<Long, Integer> productIndex = new HashMap<>();
+
+        redisService.forEachUserVector(LOAD_CHUNK, (userId, hash) -> {
+            SparseVector vector = SparseVector.of(hash);
+            if (vector.isEmpty()) return;
+
+            // unit rows: the dot product of two rows is their cosine
+            int n = vector.size();
+            int[] cols = new int[n];
+            float[] values = new float[n];
+            float inverseNorm = (float) (1 / vector.norm());
+            for (int i = 0; i < n; i++) {
+                cols[i] = productIndex.computeIfAbsent(vector.id(i), k -> productIndex.size());
+                values[i] = vector.weight(i) * inverseNorm;
+            }
+
+            userIds.add(userId);
+            rowCols.add(cols);
+            rowValues.add(values);
+        });
+
+        int userCount = userIds.size();
+        int productCount = productIndex.size();
+
+        // CSR
+        int[] rowPtr = new int[userCount + 1];
+        for (int u = 0; u < userCount; u++) rowPtr[u + 1] = rowPtr[u] + rowCols.get(u).length;
+        int nonZeros = rowPtr[userCount];
+        int[] cols = new int[nonZeros];
+        float[] values = new float[nonZeros];
+        for (int u = 0; u < userCount; u++) {
+            System.arraycopy(rowCols.get(u), 0, cols, rowPtr[u], rowCols.get(u).length);
+            System.arraycopy(rowValues.get(u), 0, values, rowPtr[u], rowValues.get(u).length);
+        }
+
+        // CSC (the transpose), filled with a counting pass over the CSR arrays
+        int[] colPtr = new int[productCount + 1];
+        for (int i = 0; i < nonZeros; i++) colPtr[cols[i] + 1]++;
+        for (int p = 0; p < productCount; p++) colPtr[p + 1] += colPtr[p];
+        int[] rows = new int[nonZeros];
+        float[] colValues = new float[nonZeros];
+        int[] next = Arrays.copyOf(colPtr, productCount);
+        for (int u = 0; u < userCount; u++) {
+            for (int i = rowPtr[u]; i < rowPtr[u + 1]; i++) {
+                int slot = next[cols[i]]++;
+                rows[slot] = u;
+                colValues[slot] = values[i];
+            }
+        }
+
+        long[] ids = userIds.stream().mapToLong(Long::longValue).toArray();
+        return new SparseMatrix(ids, productCount, rowPtr, cols, values, colPtr, rows, colValues);
+    }
+
+    private void write(SparseMatrix matrix, RowResult[] results) {
+        Map<Long, List<Map.Entry<Long, Double>>> chunk = new HashMap<>();
+        for (int u = 0; u < results.length; u++) {
+            RowResult result = results[u];
+            List<Map.Entry<Long, Double>> top = new ArrayList<>(result.users().length);
+            for (int i = 0; i < result.users().length; i++) {
+                top.add(Map.entry(matrix.userIds()[result.users()[i]], (double) result.scores()[i]));
+            }
+            chunk.put(matrix.userIds()[u], top);
+            if (chunk.size() == WRITE_CHUNK) {
+                redisService.saveSimilarUsersBatch(chunk);
+                chunk.clear();
+            }
+        }
+        redisService.saveSimilarUsersBatch(chunk);
+    }
+
+    // per worker thread scratch space, reused for all rows the thread computes
+    private static final class Workspace {
+        final float[] acc;
+        final int[] seenInRow;
+        final int[] touched;
+
+        Workspace(int users) {
+            acc = new float[users];
+            seenInRow = new int[users];
+            touched = new int[users];
+        }
+    }
+
+    // computes rows [from, to) of A * A^T, returns the number of multiply-adds done
+    private static final class RowsTask extends RecursiveTask<Long> {
+
+        private final SparseMatrix m;
+        private final RowResult[] results;
+        private final ThreadLocal<Workspace> workspaces;
+        private final int from;
+        private final int to;
+
+        RowsTask(SparseMatrix m, RowResult[] results, ThreadLocal<Workspace> workspaces, int from, int to) {
+            this.m = m;
+            this.results = results;
+            this.workspaces = workspaces;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from > ROWS_PER_TASK) {
+                int mid = (from + to) >>> 1;
+                RowsTask left = new RowsTask(m, results, workspaces, from, mid);
+                left.fork();
+                long right = new RowsTask(m, results, workspaces, mid, to).compute();
+                return right + left.join();
+            }
+
+            Workspace w = workspaces.get();
+            long work = 0;
+            for (int u = from; u < to; u++) {
+                int touchedCount = 0;
+                for (int i = m.rowPtr()[u]; i < m.rowPtr()[u + 1]; i++) {
+                    int product = m.cols()[i];
+                    float weight = m.values()[i];
+                    for (int j = m.colPtr()[product]; j < m.colPtr()[product + 1]; j++) {
+                        int v = m.rows()[j];
+                        if (v == u) continue;
+                        // rows are stamped with u + 1, so the accumulator never needs clearing
+                        if (w.seenInRow[v] != u + 1) {
+                            w.seenInRow[v] = u + 1;
+                            w.acc[v] = 0;
+                            w.touched[touchedCount++] = v;
+                        }
+                        w.acc[v] += weight * m.colValues()[j];
+                    }
+                    work += m.colPtr()[product + 1] - m.colPtr()[product];
+                }
+                results[u] = topK(w.acc, w.touched, touchedCount);
+            }
+            return work;
+        }
+
+        // best K scores of the row that reach MIN_SIMILARITY, highest first
+        private static RowResult topK(float[] acc, int[] touched, int touchedCount) {
+            PriorityQueue<Integer> heap = new PriorityQueue<>(TOP_SIMILAR_USERS + 1, Comparator.comparingDouble(v -> acc[v]));
+            for (int i = 0; i < touchedCount; i++) {
+                int v = touched[i];
+                if (acc[v] < MIN_SIMILARITY) continue;
+                if (heap.size() < TOP_SIMILAR_USERS) {
+                    heap.add(v);
+                } else if (acc[v] > acc[heap.peek()]) {
+                    heap.poll();
+                    heap.add(v);
+                }
+            }
+
+            int[] users = new int[heap.size()];
+            float[] scores = new float[heap.size()];
+            for (int i = users.length - 1; i >= 0; i--) {
+                int v = heap.poll();
+                users[i] = v;
+                scores[i] = acc[v];
+            }
+            return new RowResult(users, scores);
+        }
+    }
+}
@@ -1,92 +1,150 @@
 package com.ecommerce.service.recommendation;
 
+import com.ecommerce.dto.response.report.SimilarUserRecallReportResponse;
 import com.ecommerce.redis.RedisService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class SimilarUserUpdater {
 
-    private final RedisTemplate<String, Object> redisTemplate;
     private final RedisService redisService;
+    private final UserSimilarityIndex similarityIndex;
 
-    private static final int TOP_SIMILAR_USERS = 50;
-    private static final double MIN_SIMILARITY = 0.3;
+    static final int TOP_SIMILAR_USERS = 50;
+    static final double MIN_SIMILARITY = 0.3;
+    private static final int ANN_CANDIDATES = 200;
+    private static final int ANN_MAX_SCANNED = 5_000;
 
     @Async
-    public CompletableFuture<Void> updateSimilarUsersAsync(Long changedUserId) {
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillProductUsersIndex() {
         try {
-            updateSimilarUsers(changedUserId);
+            redisService.backfillProductUsersIndex();
         } catch (Exception e) {
-            log.error("Failed to update similar users for {}", changedUserId, e);
+            log.error("Failed to backfill product -> users index", e);
         }
-        return CompletableFuture.completedFuture(null);
     }
 
     public void updateSimilarUsers(Long changedUserId) {
-        // 1. Get the target user's vector using our new service method
-        Map<Object, Object> changedVector = redisService.getUserVector(changedUserId);
+        // 1. Get the target user's vector and refresh its LSH signature
+        SparseVector changedVector = SparseVector.of(redisService.getUserVector(changedUserId));
+        similarityIndex.update(changedUserId, changedVector);
         if (changedVector.isEmpty()) return;
 
-        // 2. Find all other users
-        Set<String> allUserKeys = redisTemplate.keys("user_vector:*");
+        // 2. Approximate search once the index is loaded, exact search until then
+        List<Map.Entry<Long, Double>> top = similarityIndex.isLoaded()
+                ? findSimilarApprox(changedUserId, changedVector)
+                : findSimilarExact(changedUserId, changedVector);
 
-        Map<Long, Double> similarityScores = new HashMap<>();
+        // 3. Save using redis method
+        redisService.saveSimilarUsers(changedUserId, top);
 
-        for (String key : allUserKeys) {
-            // key format is "user_vector:ID"
-            Long otherId = Long.parseLong(key.split(":")[1]);
-            if (otherId.equals(changedUserId)) {
-                continue;
-            }
-            // 3. Fetch the other user's vector
-            Map<Object, Object> otherVector = redisService.getUserVector(otherId);
+        log.debug("Updated similar users for user {}: {} matches", changedUserId, top.size());
+    }
+
+//    exact: every user sharing at least one product (product -> users index), cosine against all of them
+    List<Map.Entry<Long, Double>> findSimilarExact(Long userId, SparseVector vector) {
+        Set<Long> candidateIds = redisService.getUsersOfProducts(vector.productIds());
+        candidateIds.remove(userId);
+        return rank(vector, redisService.getUserVectors(candidateIds));
+    }
+
+//    approximate: a bounded number of LSH candidates, re-ranked with the exact cosine
+    List<Map.Entry<Long, Double>> findSimilarApprox(Long userId, SparseVector vector) {
+        List<Long> candidateIds = similarityIndex.candidates(userId, ANN_CANDIDATES, ANN_MAX_SCANNED);
+        Map<Long, Map<Object, Object>> candidateVectors = redisService.getUserVectors(candidateIds);
+        // vectors expire after 90 days of inactivity, drop those users from the index as well
+        candidateIds.stream().filter(id -> !candidateVectors.containsKey(id)).forEach(similarityIndex::remove);
+        return rank(vector, candidateVectors);
+    }
 
-            // 4. Calculate similarity using the local maps (fast)
-            double similarity = calculateCosine(changedVector, otherVector);
+//    compares exact and approximate search on a random sample of indexed users
+    public SimilarUserRecallReportResponse recallReport(int sampleSize, int k) {
+        List<Long> users = new ArrayList<>(similarityIndex.userIds());
+        Collections.shuffle(users);
+
+        List<Double> exactMillis = new ArrayList<>();
+        List<Double> approxMillis = new ArrayList<>();
+        double recallSum = 0;
+        int recallCount = 0;
+        long exactCandidates = 0, approxCandidates = 0;
+
+        for (Long userId : users) {
+            if (exactMillis.size() >= sampleSize) break;
+            SparseVector vector = SparseVector.of(redisService.getUserVector(userId));
+            if (vector.isEmpty()) continue;
+
+            long start = System.nanoTime();
+            List<Map.Entry<Long, Double>> exact = findSimilarExact(userId, vector);
+            exactMillis.add((System.nanoTime() - start) / 1_000_000.0);
+
+            start = System.nanoTime();
+            List<Map.Entry<Long, Double>> approx = findSimilarApprox(userId, vector);
+            approxMillis.add((System.nanoTime() - start) / 1_000_000.0);
+
+            exactCandidates += redisService.getUsersOfProducts(vector.productIds()).size() - 1;
+            approxCandidates += similarityIndex.candidates(userId, ANN_CANDIDATES, ANN_MAX_SCANNED).size();
+
+            Set<Long> expected = topIds(exact, k);
+            if (expected.isEmpty()) continue;
+            Set<Long> found = topIds(approx, k);
+            found.retainAll(expected);
+            recallSum += (double) found.size() / expected.size();
+            recallCount++;
+        }
+
+        int sampled = exactMillis.size();
+        return new SimilarUserRecallReportResponse(
+                sampled,
+                k,
+                recallCount == 0 ? 1.0 : recallSum / recallCount,
+                average(exactMillis),
+                percentile95(exactMillis),
+                average(approxMillis),
+                percentile95(approxMillis),
+                sampled == 0 ? 0 : (double) exactCandidates / sampled,
+                sampled == 0 ? 0 : (double) approxCandidates / sampled
+        );
+    }
 
+//    helpers
+    private List<Map.Entry<Long, Double>> rank(SparseVector vector, Map<Long, Map<Object, Object>> candidateVectors) {
+        Map<Long, Double> similarityScores = new HashMap<>();
+        candidateVectors.forEach((otherId, otherVector) -> {
+            double similarity = vector.cosine(SparseVector.of(otherVector));
             if (similarity >= MIN_SIMILARITY) {
                 similarityScores.put(otherId, similarity);
             }
+        });
 
-        }
-        // 5. Sort and get top matches
-        List<Map.Entry<Long, Double>> top = similarityScores.entrySet().stream()
+        return similarityScores.entrySet().stream()
                 .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
                 .limit(TOP_SIMILAR_USERS)
                 .toList();
-
-        // 6. Save using redis method
-        redisService.saveSimilarUsers(changedUserId, top);
-
-        log.debug("Updated similar users for user {}: {} matches", changedUserId, top.size());
     }
 
-    private double calculateCosine(Map<Object, Object> vec1, Map<Object, Object> vec2) {
-        double dot = 0.0, norm1 = 0.0, norm2 = 0.0;
-
-        // Collect all Product IDs involved from both users
-        Set<Object> allPids = new HashSet<>(vec1.keySet());
-        allPids.addAll(vec2.keySet());
-
-        for (Object pid : allPids) {
-            // With new serialization, these will be clean strings like "101"
-            double score1 = Double.parseDouble(vec1.getOrDefault(pid, "0").toString());
-            double score2 = Double.parseDouble(vec2.getOrDefault(pid, "0").toString());
+    private Set<Long> topIds(List<Map.Entry<Long, Double>> ranked, int k) {
+        Set<Long> ids = new HashSet<>();
+        ranked.stream().limit(k).forEach(e -> ids.add(e.getKey()));
+        return ids;
+    }
 
-            dot += score1 * score2;
-            norm1 += score1 * score1;
-            norm2 += score2 * score2;
-        }
+    private double average(List<Double> values) {
+        return values.stream().mapToDouble(Double::doubleValue).average().orElse(0);
+    }
 
-        return (norm1 == 0 || norm2 == 0) ? 0.0 : dot / (Math.sqrt(norm1) * Math.sqrt(norm2));
+    private double percentile95(List<Double> values) {
+        if (values.isEmpty()) return 0;
+        List<Double> sorted = values.stream().sorted().toList();
+        return sorted.get((int) Math.ceil(0.95 * sorted.size()) - 1);
     }
 }
@@ -0,0 +1,134 @@
+package com.ecommerce.service.recommendation;
+
+import com.ecommerce.dto.response.report.SimilaritySchedulerMetricsResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// debounces recomputation of similar users + home feed
+// activity only marks the user dirty (after the writer commits), every debounce window the scheduler
+// recomputes each dirty user once, however many carts, views or purchases happened in between
+// the scheduling thread only drains the dirty users, the batch itself runs on the task executor;
+// while a batch is still running new marks keep coalescing until the next window
+@Slf4j
+@Component
+public class SimilarityRecomputeScheduler {
+
+    private final SimilarUserUpdater similarUserUpdater;
+    private final HomeFeedUpdater homeFeedUpdater;
+    private final TaskExecutor taskExecutor;
+    private final long debounceMillis;
+
+    // user -> time of the first mark not yet recomputed
+    private final Map<Long, Long> dirtyUsers = new ConcurrentHashMap<>();
+    private final AtomicBoolean batchRunning = new AtomicBoolean();
+
+    private final AtomicLong marks = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong recomputes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile long lastLagMillis = 0;
+    private volatile long maxLagMillis = 0;
+
+    public SimilarityRecomputeScheduler(SimilarUserUpdater similarUserUpdater,
+                                        HomeFeedUpdater homeFeedUpdater,
+                                        TaskExecutor taskExecutor,
+                                        @Value("${recommendation.similarity.debounce-ms:5000}") long debounceMillis) {
+        this.similarUserUpdater = similarUserUpdater;
+        this.homeFeedUpdater = homeFeedUpdater;
+        this.taskExecutor = taskExecutor;
+        this.debounceMillis = debounceMillis;
+    }
+
+//    called by writers of user activity
+    public void markDirty(Long userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    mark(userId);
+                }
+            });
+        } else {
+            mark(userId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${recommendation.similarity.debounce-ms:5000}")
+    public void recomputeDirtyUsers() {
+        if (dirtyUsers.isEmpty() || !batchRunning.compareAndSet(false, true)) return;
+
+        List<Map.Entry<Long, Long>> batch = new ArrayList<>();
+        for (Long userId : List.copyOf(dirtyUsers.keySet())) {
+            Long markedAt = dirtyUsers.remove(userId);
+            if (markedAt != null) batch.add(Map.entry(userId, markedAt));
+        }
+
+        try {
+            taskExecutor.execute(() -> {
+                try {
+                    recompute(batch);
+                } finally {
+                    batchRunning.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // executor full: the users stay dirty with their first mark and go with the next window
+            batch.forEach(dirty -> dirtyUsers.putIfAbsent(dirty.getKey(), dirty.getValue()));
+            batchRunning.set(false);
+            log.warn("Task executor full, {} dirty users wait for the next window", batch.size());
+        }
+    }
+
+    public SimilaritySchedulerMetricsResponse metrics() {
+        return new SimilaritySchedulerMetricsResponse(
+                debounceMillis,
+                dirtyUsers.size(),
+                marks.get(),
+                recomputes.get(),
+                coalesced.get(),
+                failures.get(),
+                lastLagMillis,
+                maxLagMillis
+        );
+    }
+
+//    helpers
+    private void recompute(List<Map.Entry<Long, Long>> batch) {
+        long maxLag = 0;
+        for (Map.Entry<Long, Long> dirty : batch) {
+            long lag = System.currentTimeMillis() - dirty.getValue();
+            maxLag = Math.max(maxLag, lag);
+            try {
+                similarUserUpdater.updateSimilarUsers(dirty.getKey());
+                homeFeedUpdater.updateHomeFeed(dirty.getKey());
+                recomputes.incrementAndGet();
+            } catch (Exception e) {
+                failures.incrementAndGet();
+                log.error("Failed to recompute similar users for {}", dirty.getKey(), e);
+            }
+        }
+
+        lastLagMillis = maxLag;
+        maxLagMillis = Math.max(maxLagMillis, maxLag);
+        log.debug("Recomputed {} dirty users, max lag {} ms", batch.size(), maxLag);
+    }
+
+    private void mark(Long userId) {
+        marks.incrementAndGet();
+        // already dirty in this window: this mark costs no extra recompute
+        if (dirtyUsers.putIfAbsent(userId, System.currentTimeMillis()) != null) coalesced.incrementAndGet();
+    }
+}
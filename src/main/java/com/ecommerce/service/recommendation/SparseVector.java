@@ -0,0 +1,98 @@
+package com.ecommerce.service.recommendation;
+
+import com.ecommerce.redis.RedisService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+// a user interest vector parsed once from its redis hash: product ids sorted ascending, weights alongside
+// the norm is computed once, so a cosine is a single merge join over two sorted arrays
+public final class SparseVector {
+
+    public static final SparseVector EMPTY = new SparseVector(new long[0], new float[0]);
+
+    private final long[] ids;
+    private final float[] weights;
+    private final double norm;
+
+    private SparseVector(long[] ids, float[] weights) {
+        this.ids = ids;
+        this.weights = weights;
+        double sum = 0;
+        for (float w : weights) sum += (double) w * w;
+        this.norm = Math.sqrt(sum);
+    }
+
+//    productId -> score hash as read from redis, zero scores and the decay time field are dropped
+//    scores of one vector share the same decay factor, so cosine does not need it applied
+    public static SparseVector of(Map<?, ?> hash) {
+        if (hash == null || hash.isEmpty()) return EMPTY;
+        long[] rawIds = new long[hash.size()];
+        float[] rawWeights = new float[hash.size()];
+        int n = 0;
+        for (Map.Entry<?, ?> e : hash.entrySet()) {
+            if (RedisService.VECTOR_TIME_FIELD.equals(e.getKey())) continue;
+            float weight = Float.parseFloat(e.getValue().toString());
+            if (weight == 0) continue;
+            rawIds[n] = Long.parseLong(e.getKey().toString());
+            rawWeights[n++] = weight;
+        }
+        if (n == 0) return EMPTY;
+
+        // ids are unique, so each weight finds its slot in the sorted ids with a binary search
+        long[] ids = Arrays.copyOf(rawIds, n);
+        Arrays.sort(ids);
+        float[] weights = new float[n];
+        for (int i = 0; i < n; i++) weights[Arrays.binarySearch(ids, rawIds[i])] = rawWeights[i];
+        return new SparseVector(ids, weights);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public boolean isEmpty() {
+        return ids.length == 0;
+    }
+
+    public long id(int i) {
+        return ids[i];
+    }
+
+    public float weight(int i) {
+        return weights[i];
+    }
+
+    public double norm() {
+        return norm;
+    }
+
+    public List<Long> productIds() {
+        List<Long> result = new ArrayList<>(ids.length);
+        for (long id : ids) result.add(id);
+        return result;
+    }
+
+    public double dot(SparseVector other) {
+        double dot = 0;
+        int i = 0, j = 0;
+        while (i < ids.length && j < other.ids.length) {
+            long a = ids[i], b = other.ids[j];
+            if (a == b) {
+                dot += (double) weights[i++] * other.weights[j++];
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return dot;
+    }
+
+    public double cosine(SparseVector other) {
+        if (norm == 0 || other.norm == 0) return 0.0;
+        return dot(other) / (norm * other.norm);
+    }
+}
@@ -1,16 +1,23 @@
 package com.ecommerce.service.recommendation;
 
+import com.ecommerce.dto.intermediate.ViewEvent;
 import com.ecommerce.model.activity.ActivityType;
 import com.ecommerce.repository.activity.UserActivityRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+
 @Service
 @RequiredArgsConstructor
 public class UserActivityService {
 
     private final UserActivityRepository userActivityRepository;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
 
     @Transactional
     public void recordActivity(Long userId, Long productId, ActivityType activityType, int score){
@@ -19,5 +26,20 @@ public class UserActivityService {
 
     }
 
+//    same upsert as above for many views at once, sent to postgres as one jdbc batch
+    @Transactional
+    public void recordViews(Collection<ViewEvent> views){
+        if(views.isEmpty()) return;
+
+        SqlParameterSource[] rows = views.stream()
+                .map(view -> new MapSqlParameterSource()
+                        .addValue("userId", view.userId())
+                        .addValue("productId", view.productId())
+                        .addValue("activityType", ActivityType.VIEW.name())
+                        .addValue("score", 1))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(UserActivityRepository.UPSERT_ACTIVITY, rows);
+    }
+
 }
 
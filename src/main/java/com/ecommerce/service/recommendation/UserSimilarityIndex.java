@@ -0,0 +1,177 @@
+package com.ecommerce.service.recommendation;
+
+import com.ecommerce.redis.RedisService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// approximate nearest neighbours over user interest vectors (random projection / simhash LSH)
+// every user gets a 128 bit signature, bit i = sign of the vector projected on a random +-1 hyperplane,
+// so the share of differing bits estimates the angle between two users (cosine = cos(pi * hamming / 128))
+// the signature is cut into 32 bands of 4 bits, users sharing any band are candidates
+// (at cosine 0.3 a bit agrees with p ~ 0.6, 1 - (1 - p^4)^32 ~ 0.99 of such pairs share a band, 16 x 8 found ~ 0.23)
+// signatures live in memory for lookups and are persisted to redis so a restart does not need every vector,
+// vectors stored before that are backfilled once and the index reports not loaded until they are
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserSimilarityIndex {
+
+    public static final int SIGNATURE_BITS = 128;
+    private static final int BANDS = 32;
+    private static final int BITS_PER_BAND = SIGNATURE_BITS / BANDS;
+    private static final long SEED = 0x5DEECE66DL;
+    private static final int BACKFILL_CHUNK = 500;
+
+    private final RedisService redisService;
+
+    private final Map<Long, long[]> signatures = new ConcurrentHashMap<>();
+    // (band << 4 | band bits) -> users
+    private final Map<Integer, Set<Long>> buckets = new ConcurrentHashMap<>();
+    private volatile boolean loaded = false;
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            redisService.forEachUserSignature((userId, signature) -> put(userId, signature));
+            if (!redisService.isUserSignatureBackfilled()) backfillFromVectors();
+            loaded = true;
+            log.info("User similarity index loaded with {} users", signatures.size());
+        } catch (Exception e) {
+            log.error("Failed to load user similarity index", e);
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public Set<Long> userIds() {
+        return Collections.unmodifiableSet(signatures.keySet());
+    }
+
+//    recomputes the user's signature from the vector, moves it between buckets and persists it
+    public void update(Long userId, SparseVector vector) {
+        if (vector.isEmpty()) {
+            remove(userId);
+            redisService.deleteUserSignature(userId);
+            return;
+        }
+        long[] signature = signature(vector);
+        put(userId, signature);
+        redisService.saveUserSignature(userId, signature);
+    }
+
+    public void remove(Long userId) {
+        long[] old = signatures.remove(userId);
+        if (old == null) return;
+        for (int band = 0; band < BANDS; band++) {
+            Set<Long> bucket = buckets.get(bucketKey(old, band));
+            if (bucket != null) bucket.remove(userId);
+        }
+    }
+
+//    at most maxCandidates users sharing a band with the user, closest estimated cosine first
+//    scanning stops after maxScanned bucket members so a crowded bucket can not make this unbounded
+    public List<Long> candidates(Long userId, int maxCandidates, int maxScanned) {
+        long[] signature = signatures.get(userId);
+        if (signature == null) return List.of();
+
+        Map<Long, Integer> hamming = new HashMap<>();
+        int scanned = 0;
+        outer:
+        for (int band = 0; band < BANDS; band++) {
+            Set<Long> bucket = buckets.get(bucketKey(signature, band));
+            if (bucket == null) continue;
+            for (Long other : bucket) {
+                if (++scanned > maxScanned) break outer;
+                if (other.equals(userId) || hamming.containsKey(other)) continue;
+                long[] otherSignature = signatures.get(other);
+                if (otherSignature != null) hamming.put(other, hammingDistance(signature, otherSignature));
+            }
+        }
+
+        return hamming.entrySet().stream()
+                .sorted(Map.Entry.<Long, Integer>comparingByValue().thenComparing(Map.Entry.comparingByKey()))
+                .limit(maxCandidates)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+//    helpers
+    // signatures for users whose vector has none yet, users updated meanwhile already have a newer one
+    private void backfillFromVectors() {
+        Map<Long, long[]> chunk = new HashMap<>();
+        int[] users = {0};
+        redisService.forEachUserVector(BACKFILL_CHUNK, (userId, hash) -> {
+            if (signatures.containsKey(userId)) return;
+            SparseVector vector = SparseVector.of(hash);
+            if (vector.isEmpty()) return;
+            long[] signature = signature(vector);
+            put(userId, signature);
+            chunk.put(userId, signature);
+            users[0]++;
+            if (chunk.size() == BACKFILL_CHUNK) {
+                redisService.saveUserSignatures(chunk);
+                chunk.clear();
+            }
+        });
+        redisService.saveUserSignatures(chunk);
+        redisService.markUserSignatureBackfilled();
+        log.info("Backfilled {} user signatures from stored vectors", users[0]);
+    }
+
+    private void put(Long userId, long[] signature) {
+        remove(userId);
+        signatures.put(userId, signature);
+        for (int band = 0; band < BANDS; band++) {
+            buckets.computeIfAbsent(bucketKey(signature, band), k -> ConcurrentHashMap.newKeySet()).add(userId);
+        }
+    }
+
+    // the +-1 hyperplane coordinates of a product are the bits of two hashes of its id,
+    // so no projection matrix has to be stored and every instance computes the same signature
+    static long[] signature(SparseVector vector) {
+        double[] projections = new double[SIGNATURE_BITS];
+        for (int i = 0; i < vector.size(); i++) {
+            long productId = vector.id(i);
+            double weight = vector.weight(i);
+            long low = mix(productId ^ SEED);
+            long high = mix(low ^ SEED);
+            for (int bit = 0; bit < 64; bit++) {
+                projections[bit] += ((low >>> bit) & 1) == 1 ? weight : -weight;
+                projections[bit + 64] += ((high >>> bit) & 1) == 1 ? weight : -weight;
+            }
+        }
+
+        long[] signature = new long[2];
+        for (int bit = 0; bit < SIGNATURE_BITS; bit++) {
+            if (projections[bit] > 0) signature[bit / 64] |= 1L << (bit % 64);
+        }
+        return signature;
+    }
+
+    private static int bucketKey(long[] signature, int band) {
+        int start = band * BITS_PER_BAND;
+        int bits = (int) ((signature[start / 64] >>> (start % 64)) & ((1 << BITS_PER_BAND) - 1));
+        return band << BITS_PER_BAND | bits;
+    }
+
+    private static int hammingDistance(long[] a, long[] b) {
+        return Long.bitCount(a[0] ^ b[0]) + Long.bitCount(a[1] ^ b[1]);
+    }
+
+    // splitmix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
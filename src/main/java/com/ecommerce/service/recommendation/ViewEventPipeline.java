@@ -0,0 +1,81 @@
+package com.ecommerce.service.recommendation;
+
+import com.ecommerce.dto.intermediate.ViewEvent;
+import com.ecommerce.redis.RedisService;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// product views of logged in users are only queued on the request thread
+// a background flush coalesces repeated (user, product) views of the same window into one
+// and writes the batch with one jdbc batch upsert and pipelined redis commands
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ViewEventPipeline {
+
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final int MAX_BATCH = 1_000;
+
+    private final UserActivityService userActivityService;
+    private final RedisService redisService;
+    private final SimilarityRecomputeScheduler similarityRecomputeScheduler;
+    private final PopularityRanking popularityRanking;
+
+    private final BlockingQueue<ViewEvent> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong dropped = new AtomicLong();
+
+//    never blocks, when the queue is full the view is dropped (it only feeds recommendations)
+    public void record(Long userId, Long productId) {
+        if (!queue.offer(new ViewEvent(userId, productId))) {
+            long total = dropped.incrementAndGet();
+            if (total % 1_000 == 1) log.warn("View event queue full, {} views dropped so far", total);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${recommendation.views.flush-ms:2000}")
+    public void flush() {
+        while (!queue.isEmpty()) {
+            List<ViewEvent> drained = new ArrayList<>(MAX_BATCH);
+            queue.drainTo(drained, MAX_BATCH);
+            if (drained.isEmpty()) return;
+            try {
+                write(new LinkedHashSet<>(drained));
+            } catch (Exception e) {
+                log.error("Failed to flush {} view events", drained.size(), e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+//    helpers
+    private void write(Set<ViewEvent> views) {
+        userActivityService.recordViews(views);
+        redisService.updateViewedProducts(views);
+
+        Map<Long, Double> viewsOfProduct = new HashMap<>();
+        views.forEach(view -> viewsOfProduct.merge(view.productId(), 1.0, Double::sum));
+        popularityRanking.recordAll(viewsOfProduct);
+
+        Set<Long> users = new LinkedHashSet<>();
+        views.forEach(view -> users.add(view.userId()));
+        users.forEach(similarityRecomputeScheduler::markDirty);
+        log.debug("Flushed {} coalesced views of {} users", views.size(), users.size());
+    }
+}
@@ -29,6 +29,7 @@ import com.ecommerce.repository.service.StaffLeaveRepository;
 import com.ecommerce.repository.service.StaffWorkingHoursRepository;
 import com.ecommerce.repository.user.StaffRepository;
 import com.ecommerce.repository.user.UserRepository;
+import com.ecommerce.service.appointment.OccupancyCache;
 import com.ecommerce.utils.EventHelper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -50,6 +51,7 @@ public class StaffManagementService {
     private final ServiceRepository serviceRepository;
     private final StaffWorkingHoursRepository workingHoursRepository;
     private final StaffLeaveRepository leaveRepository;
+    private final OccupancyCache occupancyCache;
     private final AppointmentRepository appointmentRepository;
 
     private final StaffMapper staffMapper;
@@ -178,6 +180,7 @@ public class StaffManagementService {
                 .toList();
 
         workingHoursRepository.saveAll(hoursList);
+        occupancyCache.evictStaff(staffId);
     }
 
     @Transactional
@@ -214,6 +217,7 @@ public class StaffManagementService {
 
         leave.setStatus(status);
         leaveRepository.save(leave);
+        occupancyCache.evictDay(staffId, leave.getLeaveDate());
         NotificationEvent event = EventHelper.createEventForLeaveResponse(new StaffLeaveDTO(staff.getId(), staff.getUser().getUsername(), leave.getLeaveDate(), status));
         notificationProducer.send("notify.staff", event);
     }
@@ -266,6 +270,7 @@ public class StaffManagementService {
         leave.setStatus(LeaveStatus.PENDING);
 
         leaveRepository.save(leave);
+        occupancyCache.evictDay(staff.getId(), leave.getLeaveDate());
 
         NotificationEvent event = EventHelper.createEventForLeaveRequest(new StaffLeaveDTO(user.getId(), user.getUsername(), request.leaveDate(), LeaveStatus.PENDING));
         notificationProducer.send("notify.staff", event);
@@ -283,6 +288,7 @@ public class StaffManagementService {
 
         leave.setStatus(LeaveStatus.CANCELLED);
         leaveRepository.save(leave);
+        occupancyCache.evictDay(staff.getId(), leave.getLeaveDate());
 
         NotificationEvent event = EventHelper.createEventForLeaveCancel(new StaffLeaveDTO(staff.getId(), staff.getUser().getUsername(), leave.getLeaveDate(), LeaveStatus.CANCELLED));
         notificationProducer.send("notify.staff", event);
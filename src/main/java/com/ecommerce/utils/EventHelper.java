@@ -170,6 +170,25 @@ public class EventHelper {
                 .build();
     }
 
+//    paid booking whose slot was taken before the payment came back
+    public static NotificationEvent createEventForAppointmentRefund(AppointmentDetailForEvent detail){
+        Map<String, Object> metaData = Map.of(
+                "adminMessage", detail.getUser()+" paid for service: "+detail.getServiceName()+" for: "+detail.getAppointmentDate()+" but the slot was taken, refund or reschedule the payment",
+                "email", detail.getEmail(),
+                "staffId", detail.getStaffId(),
+                "staffUsername", detail.getStaffName(),
+                "staffMessage", detail.getUser()+" booking of service: "+detail.getServiceName()+" for: "+ detail.getAppointmentDate()+" could not be confirmed"
+        );
+        return NotificationEvent.builder()
+                .recipientId(detail.getUserId())
+                .username(detail.getUser())
+                .title("APPOINTMENT CANCELLED")
+                .message("Your service: "+detail.getServiceName()+" for: " +detail.getAppointmentDate()+" was booked by someone else before your payment completed, your payment will be refunded or the appointment rescheduled")
+                .type(NotificationType.APPOINTMENT_CANCELLED)
+                .metadata(metaData)
+                .build();
+    }
+
 //    for staff leave and admin response
     public static NotificationEvent createEventForLeaveRequest(StaffLeaveDTO detail) {
         Map<String, Object> metaData = Map.of(
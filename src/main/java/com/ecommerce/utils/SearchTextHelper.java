@@ -0,0 +1,81 @@
+package com.ecommerce.utils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+public class SearchTextHelper {
+
+    private SearchTextHelper(){}
+
+//    lower cases and splits on anything that is not a letter or digit, single characters are dropped
+//    accents are removed and apostrophes do not split a word, so "L'Oreal" with an accented e becomes "loreal"
+    public static List<String> tokenize(String text){
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isBlank()) return tokens;
+
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < folded.length(); i++) {
+            char c = Character.toLowerCase(folded.charAt(i));
+            if (Character.getType(c) == Character.NON_SPACING_MARK || c == '\'' || c == '\u2019') {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                current.append(c);
+            } else if (!current.isEmpty()) {
+                addToken(tokens, current);
+            }
+        }
+        if (!current.isEmpty()) addToken(tokens, current);
+        return tokens;
+    }
+
+//    trigrams of the word padded with '$' on both sides, "wax" -> "$wa", "wax", "ax$"
+    public static Set<String> trigrams(String term){
+        String padded = "$" + term + "$";
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+//    optimal string alignment distance (levenshtein + swapping two neighbours)
+//    stops early and returns max + 1 as soon as the distance is known to exceed max
+    public static int editDistance(String a, String b, int max){
+        if (Math.abs(a.length() - b.length()) > max) return max + 1;
+
+        int[] prevPrev = new int[b.length() + 1];
+        int[] prev = new int[b.length() + 1];
+        int[] curr = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) prev[j] = j;
+
+        for (int i = 1; i <= a.length(); i++) {
+            curr[0] = i;
+            int rowMin = curr[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(prev[j] + 1, curr[j - 1] + 1), prev[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, prevPrev[j - 2] + 1);
+                }
+                curr[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > max) return max + 1;
+            int[] tmp = prevPrev;
+            prevPrev = prev;
+            prev = curr;
+            curr = tmp;
+        }
+        return Math.min(prev[b.length()], max + 1);
+    }
+
+    private static void addToken(List<String> tokens, StringBuilder current){
+        if (current.length() > 1) tokens.add(current.toString());
+        current.setLength(0);
+    }
+}
@@ -0,0 +1,70 @@
+package com.ecommerce.service.appointment;
+
+import com.ecommerce.service.appointment.DayOccupancyTest.Day;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// timing harness for the slot search, not part of the normal build:
+//   mvn test -Dtest=DayOccupancyBenchmark -Dbenchmark=true
+// the same seeded staff days go through the old LocalTime loop and through DayOccupancy (building the map included),
+// a few warmup rounds first so both are compiled, then the best round of each is reported per staff day
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class DayOccupancyBenchmark {
+
+    private static final int DAYS = 20_000;
+    private static final int WARMUP_ROUNDS = 10;
+    private static final int MEASURED_ROUNDS = 10;
+
+    @Test
+    void loopVersusBitmap() {
+        Random random = new Random(22);
+        List<Day> days = new ArrayList<>(DAYS);
+        int[] durations = new int[DAYS];
+        for (int i = 0; i < DAYS; i++) {
+            days.add(DayOccupancyTest.randomDay(random));
+            durations[i] = 15 * (1 + random.nextInt(8));
+        }
+
+        long sink = 0;
+        for (int round = 0; round < WARMUP_ROUNDS; round++) sink += loop(days, durations) + bitmap(days, durations);
+
+        long bestLoop = Long.MAX_VALUE, bestBitmap = Long.MAX_VALUE;
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            sink += loop(days, durations);
+            bestLoop = Math.min(bestLoop, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            sink += bitmap(days, durations);
+            bestBitmap = Math.min(bestBitmap, System.nanoTime() - start);
+        }
+
+        System.out.printf("loop   %8.1f ns per staff day%n", (double) bestLoop / DAYS);
+        System.out.printf("bitmap %8.1f ns per staff day%n", (double) bestBitmap / DAYS);
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    private long loop(List<Day> days, int[] durations) {
+        long starts = 0;
+        for (int i = 0; i < days.size(); i++) {
+            Day day = days.get(i);
+            starts += DayOccupancyTest.loopFreeStarts(day.open(), day.close(), day.blocked(), durations[i], null).size();
+        }
+        return starts;
+    }
+
+    private long bitmap(List<Day> days, int[] durations) {
+        long starts = 0;
+        for (int i = 0; i < days.size(); i++) {
+            Day day = days.get(i);
+            List<LocalTime> free = DayOccupancy.of(day.open(), day.close(), day.blocked()).freeStarts(durations[i], null);
+            starts += free.size();
+        }
+        return starts;
+    }
+}
@@ -0,0 +1,160 @@
+package com.ecommerce.service.appointment;
+
+import com.ecommerce.dto.intermediate.appointment.TimeInterval;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DayOccupancyTest {
+
+    private static final long ALL_96 = 0xFFFFFFFFL;
+
+    private static LocalTime t(String time) {
+        return LocalTime.parse(time);
+    }
+
+    private static TimeInterval block(String start, String end) {
+        return new TimeInterval(t(start), t(end));
+    }
+
+    // the LocalTime loop SlotEngine used before the bitmap, reference for quarter aligned days
+    static List<LocalTime> loopFreeStarts(LocalTime open, LocalTime close, List<TimeInterval> blocked,
+                                          int duration, LocalTime notBefore) {
+        List<LocalTime> starts = new ArrayList<>();
+        LocalTime current = open;
+        while (!current.plusMinutes(duration).isAfter(close) && !current.plusMinutes(duration).isBefore(current)) {
+            LocalTime end = current.plusMinutes(duration);
+            boolean free = notBefore == null || !current.isBefore(notBefore);
+            for (TimeInterval b : blocked) {
+                if (current.isBefore(b.end()) && end.isAfter(b.start())) free = false;
+            }
+            if (free) starts.add(current);
+            LocalTime next = current.plusMinutes(DayOccupancy.SLOT_MINUTES);
+            if (next.isBefore(current)) break;
+            current = next;
+        }
+        return starts;
+    }
+
+    record Day(LocalTime open, LocalTime close, List<TimeInterval> blocked) {}
+
+    // working hours and appointments on the quarter grid, between 0 and 6 appointments of 15 - 120 minutes
+    static Day randomDay(Random random) {
+        int openQuarter = random.nextInt(40);
+        int closeQuarter = openQuarter + 8 + random.nextInt(DayOccupancy.QUARTERS - 1 - openQuarter - 8);
+        List<TimeInterval> blocked = new ArrayList<>();
+        int appointments = random.nextInt(7);
+        for (int i = 0; i < appointments; i++) {
+            int start = openQuarter + random.nextInt(closeQuarter - openQuarter);
+            int end = Math.min(closeQuarter, start + 1 + random.nextInt(8));
+            blocked.add(new TimeInterval(quarter(start), quarter(end)));
+        }
+        return new Day(quarter(openQuarter), quarter(closeQuarter), blocked);
+    }
+
+    static LocalTime quarter(int quarter) {
+        return LocalTime.of(quarter * 15 / 60, quarter * 15 % 60);
+    }
+
+    @Test
+    void firstQuarterOfTheDay() {
+        DayOccupancy onlyFirst = DayOccupancy.ofBits(1L, 0L);
+
+        assertThat(onlyFirst.freeStarts(15, null)).containsExactly(t("00:00"));
+        assertThat(onlyFirst.freeStarts(10, null)).containsExactly(t("00:00"));
+        assertThat(onlyFirst.freeStarts(30, null)).isEmpty();
+    }
+
+    @Test
+    void lastQuarterOfTheDay() {
+        DayOccupancy onlyLast = DayOccupancy.ofBits(0L, 1L << 31);
+
+        assertThat(onlyLast.freeStarts(15, null)).containsExactly(t("23:45"));
+        assertThat(onlyLast.freeStarts(30, null)).isEmpty();
+    }
+
+    @Test
+    void wholeDayFreeFromSlot0ToSlot95() {
+        DayOccupancy allDay = DayOccupancy.ofBits(-1L, ALL_96);
+
+        List<LocalTime> quarterStarts = allDay.freeStarts(15, null);
+        assertThat(quarterStarts).hasSize(96).startsWith(t("00:00")).endsWith(t("23:45"));
+        assertThat(allDay.freeStarts(60, null)).hasSize(93).endsWith(t("23:00"));
+        assertThat(allDay.freeStarts(24 * 60, null)).containsExactly(t("00:00"));
+        assertThat(allDay.freeStarts(24 * 60 + 15, null)).isEmpty();
+    }
+
+    @Test
+    void windowAcrossTheWordBoundary() {
+        // quarters 63 and 64 sit in different longs
+        DayOccupancy pair = DayOccupancy.ofBits(1L << 63, 1L);
+
+        assertThat(pair.freeStarts(30, null)).containsExactly(t("15:45"));
+        assertThat(pair.freeStarts(45, null)).isEmpty();
+    }
+
+    @Test
+    void windowThatExactlyFillsAGap() {
+        DayOccupancy day = DayOccupancy.of(t("09:00"), t("17:00"),
+                List.of(block("09:00", "10:00"), block("11:00", "17:00")));
+
+        assertThat(day.freeStarts(60, null)).containsExactly(t("10:00"));
+        assertThat(day.freeStarts(45, null)).containsExactly(t("10:00"), t("10:15"));
+        assertThat(day.freeStarts(75, null)).isEmpty();
+    }
+
+    @Test
+    void windowThatExactlyFillsTheShift() {
+        DayOccupancy day = DayOccupancy.of(t("09:00"), t("10:30"), List.of());
+
+        assertThat(day.freeStarts(90, null)).containsExactly(t("09:00"));
+        assertThat(day.freeStarts(105, null)).isEmpty();
+    }
+
+    @Test
+    void fullyBookedDayHasNoStarts() {
+        DayOccupancy booked = DayOccupancy.of(t("09:00"), t("17:00"),
+                List.of(block("09:00", "13:00"), block("13:00", "17:00")));
+
+        assertThat(booked.freeStarts(15, null)).isEmpty();
+        assertThat(booked.low()).isZero();
+        assertThat(booked.high()).isZero();
+        assertThat(DayOccupancy.CLOSED.freeStarts(15, null)).isEmpty();
+        assertThat(DayOccupancy.ofBits(0L, 0L)).isSameAs(DayOccupancy.CLOSED);
+    }
+
+    @Test
+    void offGridTimesAreRoundedTheSafeWay() {
+        // shift 09:10 - 11:50 only fully covers 09:15 - 11:45, the appointment 10:05 - 10:20 blocks 10:00 - 10:30
+        DayOccupancy day = DayOccupancy.of(t("09:10"), t("11:50"), List.of(block("10:05", "10:20")));
+
+        assertThat(day.freeStarts(30, null)).containsExactly(t("09:15"), t("09:30"), t("10:30"), t("10:45"), t("11:00"), t("11:15"));
+    }
+
+    @Test
+    void nothingStartsBeforeNotBefore() {
+        DayOccupancy day = DayOccupancy.of(t("09:00"), t("12:00"), List.of());
+
+        assertThat(day.freeStarts(60, t("10:05"))).containsExactly(t("10:15"), t("10:30"), t("10:45"), t("11:00"));
+        assertThat(day.freeStarts(60, t("11:30"))).isEmpty();
+    }
+
+    @Test
+    void sameStartsAsTheLoopOnRandomAlignedDays() {
+        Random random = new Random(22);
+        for (int i = 0; i < 5_000; i++) {
+            Day day = randomDay(random);
+            int duration = 15 * (1 + random.nextInt(8));
+            LocalTime notBefore = random.nextBoolean() ? null : quarter(random.nextInt(DayOccupancy.QUARTERS));
+
+            assertThat(DayOccupancy.of(day.open(), day.close(), day.blocked()).freeStarts(duration, notBefore))
+                    .as("%s duration %d not before %s", day, duration, notBefore)
+                    .isEqualTo(loopFreeStarts(day.open(), day.close(), day.blocked(), duration, notBefore));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.ecommerce.service.product;
+
+import com.ecommerce.dto.response.product.BriefProductsResponse;
+import com.ecommerce.dto.response.product.CategoryResponse;
+import com.ecommerce.service.product.CatalogSnapshot.CatalogEntry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CatalogSnapshotTest {
+
+    private static CatalogEntry entry(long id, int stock, String brand, String category, String... tags) {
+        BriefProductsResponse brief = new BriefProductsResponse(id, "p" + id, null, BigDecimal.TEN, stock, null);
+        return new CatalogEntry(id, brief, "p" + id, null, brand, category, Set.of(tags), null);
+    }
+
+    private static CatalogSnapshot snapshot(CatalogEntry... entries) {
+        Map<String, String> parents = new LinkedHashMap<>();
+        parents.put("hair", null);
+        parents.put("shampoo", "hair");
+        parents.put("skin", null);
+        List<CategoryResponse> categories = parents.keySet().stream()
+                .map(slug -> new CategoryResponse(slug, slug, null)).toList();
+        return CatalogSnapshot.build(1, List.of(entries), List.of(), List.of(), categories, parents);
+    }
+
+    @Test
+    void stockChangeReplacesEntryWithoutTouchingIndexes() {
+        CatalogSnapshot before = snapshot(entry(1, 5, "b", "shampoo", "t"), entry(2, 5, "b", "skin"));
+
+        CatalogSnapshot after = before.withProducts(List.of(entry(1, 4, "b", "shampoo", "t")));
+
+        assertThat(after.version()).isEqualTo(2);
+        assertThat(after.product(1L)).get().extracting(e -> e.brief().stock()).isEqualTo(4);
+        assertThat(before.product(1L)).get().extracting(e -> e.brief().stock()).isEqualTo(5);
+        assertThat(after.allProducts()).extracting(BriefProductsResponse::stock).containsExactly(4, 5);
+        assertThat(after.productsOfCategory("hair")).extracting(BriefProductsResponse::stock).containsExactly(4);
+        assertThat(after.productsOfTag("t")).extracting(BriefProductsResponse::stock).containsExactly(4);
+    }
+
+    @Test
+    void newProductAndCategoryMoveUpdateTheLayout() {
+        CatalogSnapshot before = snapshot(entry(1, 5, "b", "shampoo"), entry(2, 5, "b", "skin"));
+
+        CatalogSnapshot after = before.withProducts(List.of(entry(3, 1, "c", "hair", "t"), entry(2, 5, "b", "shampoo")));
+
+        assertThat(after.productsOfCategory("hair")).extracting(BriefProductsResponse::id).containsExactly(3L, 1L, 2L);
+        assertThat(after.productsOfCategory("skin")).isEmpty();
+        assertThat(after.productsOfBrand("c")).extracting(BriefProductsResponse::id).containsExactly(3L);
+        assertThat(after.productsOfTag("t")).extracting(BriefProductsResponse::id).containsExactly(3L);
+        assertThat(after.allProducts()).extracting(BriefProductsResponse::id).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void recentChangesAreFoldedIntoTheTable() {
+        CatalogSnapshot current = snapshot(entry(1, 0, null, "skin"));
+        for (int i = 0; i <= CatalogSnapshot.MAX_RECENT_CHANGES + 10; i++) {
+            current = current.withProducts(List.of(entry(1, i, null, "skin"), entry(1000 + i, i, null, "skin")));
+        }
+
+        assertThat(current.product(1L)).get().extracting(e -> e.brief().stock())
+                .isEqualTo(CatalogSnapshot.MAX_RECENT_CHANGES + 10);
+        assertThat(current.entries()).hasSize(CatalogSnapshot.MAX_RECENT_CHANGES + 12);
+        assertThat(current.productsOfCategory("skin")).hasSize(CatalogSnapshot.MAX_RECENT_CHANGES + 12);
+    }
+
+    @Test
+    void fingerprintFollowsContentNotVersion() {
+        CatalogSnapshot before = snapshot(entry(1, 5, "b", "shampoo", "t"), entry(2, 5, "b", "skin"));
+
+        CatalogSnapshot changed = before.withProducts(List.of(entry(1, 4, "b", "shampoo", "t")));
+        CatalogSnapshot reverted = changed.withProducts(List.of(entry(1, 5, "b", "shampoo", "t")));
+        CatalogSnapshot rebuilt = snapshot(entry(1, 4, "b", "shampoo", "t"), entry(2, 5, "b", "skin"));
+
+        assertThat(changed.fingerprint()).isNotEqualTo(before.fingerprint());
+        assertThat(reverted.fingerprint()).isEqualTo(before.fingerprint());
+        assertThat(rebuilt.fingerprint()).isEqualTo(changed.fingerprint());
+        assertThat(before.withCategory(new CategoryResponse("Face", "face", null), "skin").fingerprint())
+                .isNotEqualTo(before.fingerprint());
+    }
+}
@@ -0,0 +1,91 @@
+package com.ecommerce.service.product;
+
+import com.ecommerce.dto.response.product.BriefProductsResponse;
+import com.ecommerce.service.product.CatalogSnapshot.CatalogEntry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CategoryTreeTest {
+
+    private static CatalogEntry entry(long id, String category) {
+        BriefProductsResponse brief = new BriefProductsResponse(id, "p" + id, null, BigDecimal.ONE, 1, null);
+        return new CatalogEntry(id, brief, "p" + id, null, null, category, Set.of(), null);
+    }
+
+    // hair -> (shampoo -> dry-shampoo, conditioner), skin
+    private static Map<String, String> parents() {
+        Map<String, String> parents = new LinkedHashMap<>();
+        parents.put("hair", null);
+        parents.put("shampoo", "hair");
+        parents.put("dry-shampoo", "shampoo");
+        parents.put("conditioner", "hair");
+        parents.put("skin", null);
+        return parents;
+    }
+
+    @Test
+    void subtreeCoversAllDescendantsInIdOrderPerCategory() {
+        CategoryTree tree = CategoryTree.build(parents(), List.of(
+                entry(1, "dry-shampoo"), entry(2, "hair"), entry(3, "conditioner"),
+                entry(4, "shampoo"), entry(5, "skin"), entry(6, "shampoo")));
+
+        assertThat(tree.productIdsOfSubtree("hair")).containsExactly(2L, 4L, 6L, 1L, 3L);
+        assertThat(tree.productIdsOfSubtree("shampoo")).containsExactly(4L, 6L, 1L);
+        assertThat(tree.productIdsOfSubtree("dry-shampoo")).containsExactly(1L);
+        assertThat(tree.productIdsOfSubtree("skin")).containsExactly(5L);
+        assertThat(tree.productIdsOfSubtree("unknown")).isEmpty();
+    }
+
+    @Test
+    void emptyLeafAndEmptySubtreeHaveEmptyRanges() {
+        CategoryTree tree = CategoryTree.build(parents(), List.of(entry(1, "skin")));
+
+        assertThat(tree.productIdsOfSubtree("hair")).isEmpty();
+        assertThat(tree.productIdsOfSubtree("dry-shampoo")).isEmpty();
+        assertThat(tree.productIdsOfSubtree("skin")).containsExactly(1L);
+    }
+
+    @Test
+    void unknownParentAndUnknownCategoryAreHandled() {
+        Map<String, String> parents = parents();
+        parents.put("orphan", "deleted-parent");
+        CategoryTree tree = CategoryTree.build(parents, List.of(entry(1, "orphan"), entry(2, "no-such-category")));
+
+        assertThat(tree.productIdsOfSubtree("orphan")).containsExactly(1L);
+        assertThat(tree.pathOf("orphan")).containsExactly("orphan");
+        assertThat(tree.pathOf("dry-shampoo")).containsExactly("dry-shampoo", "shampoo", "hair");
+    }
+
+    @Test
+    void parentCycleIsCutInsteadOfHidingItsCategories() {
+        Map<String, String> parents = new LinkedHashMap<>();
+        parents.put("hair", null);
+        parents.put("a", "b");
+        parents.put("b", "a");
+        parents.put("c", "b");
+        CategoryTree tree = CategoryTree.build(parents, List.of(entry(1, "a"), entry(2, "b"), entry(3, "c"), entry(4, "hair")));
+
+        assertThat(tree.productIdsOfSubtree("a")).containsExactlyInAnyOrder(1L, 2L, 3L);
+        assertThat(tree.productIdsOfSubtree("b")).containsExactlyInAnyOrder(2L, 3L);
+        assertThat(tree.productIdsOfSubtree("c")).containsExactly(3L);
+        assertThat(tree.productIdsOfSubtree("hair")).containsExactly(4L);
+        assertThat(tree.pathOf("c")).containsExactly("c", "b", "a");
+        assertThat(tree.pathOf("a")).containsExactly("a");
+    }
+
+    @Test
+    void newCategoryMovesProductsIntoTheRightRange() {
+        CategoryTree tree = CategoryTree.build(parents(), List.of(entry(1, "skin"), entry(2, "hair")));
+        List<CatalogEntry> products = List.of(entry(1, "skin"), entry(2, "hair"), entry(3, "face"));
+
+        CategoryTree withFace = tree.withCategory("face", "skin", products);
+
+        assertThat(withFace.productIdsOfSubtree("skin")).containsExactly(1L, 3L);
+        assertThat(withFace.productIdsOfSubtree("face")).containsExactly(3L);
+        assertThat(withFace.productIdsOfSubtree("hair")).containsExactly(2L);
+    }
+}
@@ -0,0 +1,80 @@
+package com.ecommerce.service.product;
+
+import com.ecommerce.dto.response.product.BriefProductsResponse;
+import com.ecommerce.dto.response.product.CategoryResponse;
+import com.ecommerce.service.product.CatalogSnapshot.CatalogEntry;
+import com.ecommerce.service.product.ProductFacetIndex.FacetResult;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductFacetIndexTest {
+
+    private static CatalogEntry entry(long id, int stock, String brand, String category) {
+        BriefProductsResponse brief = new BriefProductsResponse(id, "p" + id, null, BigDecimal.TEN, stock, null);
+        return new CatalogEntry(id, brief, "p" + id, null, brand, category, Set.of(), null);
+    }
+
+    private static CatalogSnapshot snapshot(CatalogEntry... entries) {
+        Map<String, String> parents = new LinkedHashMap<>();
+        parents.put("hair", null);
+        parents.put("shampoo", "hair");
+        parents.put("skin", null);
+        List<CategoryResponse> categories = parents.keySet().stream()
+                .map(slug -> new CategoryResponse(slug, slug, null)).toList();
+        return CatalogSnapshot.build(1, List.of(entries), List.of(), List.of(), categories, parents);
+    }
+
+    private static FacetResult filter(ProductFacetIndex index, String facet, String... values) {
+        return index.filter(Map.of(facet, List.of(values)), 0, 10);
+    }
+
+    @Test
+    void categoryMatchesItsSubCategories() {
+        ProductFacetIndex index = new ProductFacetIndex();
+        CatalogSnapshot snapshot = snapshot(entry(1, 1, "b", "hair"), entry(2, 1, "b", "shampoo"), entry(3, 1, "b", "skin"));
+        index.onCatalogLoaded(snapshot);
+
+        FacetResult hair = filter(index, ProductFacetIndex.CATEGORY, "hair");
+
+        assertThat(hair.productIds()).containsExactly(1L, 2L);
+        assertThat(hair.productIds()).containsExactlyElementsOf(
+                snapshot.productsOfCategory("hair").stream().map(BriefProductsResponse::id).toList());
+        assertThat(filter(index, ProductFacetIndex.CATEGORY, "shampoo").productIds()).containsExactly(2L);
+        assertThat(hair.facets().get(ProductFacetIndex.CATEGORY)).containsEntry("hair", 2).containsEntry("shampoo", 1);
+    }
+
+    @Test
+    void stockChangeMovesOnlyThatProduct() {
+        ProductFacetIndex index = new ProductFacetIndex();
+        CatalogSnapshot before = snapshot(entry(1, 1, "b", "hair"), entry(2, 1, "b", "skin"));
+        index.onCatalogLoaded(before);
+        FacetResult inStockBefore = filter(index, ProductFacetIndex.STOCK, ProductFacetIndex.IN_STOCK);
+
+        CatalogEntry soldOut = entry(1, 0, "b", "hair");
+        index.onProductsChanged(before.withProducts(List.of(soldOut)), List.of(soldOut));
+
+        assertThat(inStockBefore.productIds()).containsExactly(1L, 2L);
+        assertThat(filter(index, ProductFacetIndex.STOCK, ProductFacetIndex.IN_STOCK).productIds()).containsExactly(2L);
+        assertThat(filter(index, ProductFacetIndex.STOCK, ProductFacetIndex.OUT_OF_STOCK).productIds()).containsExactly(1L);
+        assertThat(filter(index, ProductFacetIndex.CATEGORY, "hair").productIds()).containsExactly(1L);
+    }
+
+    @Test
+    void newProductsAndCategoryMovesAreIndexed() {
+        ProductFacetIndex index = new ProductFacetIndex();
+        CatalogSnapshot before = snapshot(entry(1, 1, "b", "skin"), entry(2, 1, "b", "skin"));
+        index.onCatalogLoaded(before);
+
+        List<CatalogEntry> changed = List.of(entry(3, 1, "c", "shampoo"), entry(1, 1, "b", "shampoo"));
+        index.onProductsChanged(before.withProducts(changed), changed);
+
+        assertThat(filter(index, ProductFacetIndex.CATEGORY, "hair").productIds()).containsExactly(1L, 3L);
+        assertThat(filter(index, ProductFacetIndex.CATEGORY, "skin").productIds()).containsExactly(2L);
+        assertThat(filter(index, ProductFacetIndex.BRAND, "c").productIds()).containsExactly(3L);
+        assertThat(index.filter(Map.of(), 0, 10).totalHits()).isEqualTo(3);
+    }
+}
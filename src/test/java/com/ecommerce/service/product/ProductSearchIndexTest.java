@@ -0,0 +1,100 @@
+package com.ecommerce.service.product;
+
+import com.ecommerce.dto.response.product.BrandResponse;
+import com.ecommerce.dto.response.product.BriefProductsResponse;
+import com.ecommerce.service.product.CatalogSnapshot.CatalogEntry;
+import com.ecommerce.service.product.ProductSearchIndex.SearchHits;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductSearchIndexTest {
+
+    private static CatalogEntry entry(long id, String title, String brand) {
+        BriefProductsResponse brief = new BriefProductsResponse(id, title, null, BigDecimal.ONE, 1, null);
+        return new CatalogEntry(id, brief, "p-" + id, null, brand, null, Set.of(), null);
+    }
+
+    private static ProductSearchIndex index(List<CatalogEntry> entries) {
+        List<BrandResponse> brands = entries.stream().map(CatalogEntry::brandSlug).filter(b -> b != null).distinct()
+                .map(slug -> new BrandResponse(slug, slug, null)).toList();
+        CatalogSnapshot snapshot = CatalogSnapshot.build(1, entries, List.of(), brands, List.of(), Map.of());
+        ProductSearchIndex index = new ProductSearchIndex();
+        index.onCatalogLoaded(snapshot);
+        return index;
+    }
+
+    @Test
+    void everyQueryWordMustMatch() {
+        ProductSearchIndex index = index(List.of(
+                entry(1, "Argan Oil Shampoo", null),
+                entry(2, "Argan Oil Serum", null),
+                entry(3, "Coconut Shampoo", null)));
+
+        assertThat(index.search("argan shampoo", 0, 10).productIds()).containsExactly(1L);
+        assertThat(index.search("argan", 0, 10).productIds()).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(index.search("argan conditioner", 0, 10).totalHits()).isZero();
+    }
+
+    @Test
+    void prefixMatchesRankBelowExactMatches() {
+        ProductSearchIndex index = index(List.of(
+                entry(1, "Shampoo Bar", null),
+                entry(2, "Sham Wow Cloth", null)));
+
+        assertThat(index.search("sham", 0, 10).productIds()).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void prefixExpansionIsCapped() {
+        List<CatalogEntry> entries = new ArrayList<>();
+        for (int i = 0; i < ProductSearchIndex.MAX_PREFIX_EXPANSIONS + 10; i++) {
+            entries.add(entry(i + 1, String.format("serum%02d", i), null));
+        }
+        ProductSearchIndex index = index(entries);
+
+        SearchHits hits = index.search("serum", 0, 100);
+
+        assertThat(hits.totalHits()).isEqualTo(ProductSearchIndex.MAX_PREFIX_EXPANSIONS);
+        assertThat(hits.productIds()).hasSize(ProductSearchIndex.MAX_PREFIX_EXPANSIONS);
+    }
+
+    @Test
+    void pagingKeepsTheTotal() {
+        ProductSearchIndex index = index(List.of(
+                entry(1, "Hair Wax", null),
+                entry(2, "Hair Gel", null),
+                entry(3, "Hair Spray", null)));
+
+        SearchHits page = index.search("hair", 1, 1);
+
+        assertThat(page.totalHits()).isEqualTo(3);
+        assertThat(page.productIds()).hasSize(1);
+    }
+
+    @Test
+    void typoMatchesIncludeSwappedNeighbours() {
+        ProductSearchIndex index = index(List.of(
+                entry(1, "Revitalift Cream", "loreal"),
+                entry(2, "Night Cream", "nivea")));
+
+        // one transposition, the words share only two of their six trigrams
+        assertThat(index.search("lorael", 0, 10).productIds()).containsExactly(1L);
+        assertThat(index.search("loeral cream", 0, 10).productIds()).containsExactly(1L);
+        assertThat(index.search("nivae", 0, 10).productIds()).containsExactly(2L);
+    }
+
+    @Test
+    void typoMatchingNeedsCloseEnoughWords() {
+        ProductSearchIndex index = index(List.of(entry(1, "Revitalift Cream", "loreal")));
+
+        assertThat(index.search("lorxyz", 0, 10).totalHits()).isZero();
+        assertThat(index.search("crm", 0, 10).totalHits()).isZero();
+    }
+}
@@ -0,0 +1,69 @@
+package com.ecommerce.service.recommendation;
+
+import com.ecommerce.redis.RedisService;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class SparseVectorTest {
+
+    // keys in the given (deliberately unsorted) order, like a redis hash comes back
+    private static Map<Object, Object> hash(Object... keyAndValue) {
+        Map<Object, Object> hash = new LinkedHashMap<>();
+        for (int i = 0; i < keyAndValue.length; i += 2) hash.put(keyAndValue[i].toString(), keyAndValue[i + 1].toString());
+        return hash;
+    }
+
+    @Test
+    void unsortedHashIsSortedWithWeightsKeptAlongside() {
+        SparseVector vector = SparseVector.of(hash(30, 3, 10, 1, 20, 2));
+
+        assertThat(vector.productIds()).containsExactly(10L, 20L, 30L);
+        assertThat(vector.weight(0)).isEqualTo(1f);
+        assertThat(vector.weight(1)).isEqualTo(2f);
+        assertThat(vector.weight(2)).isEqualTo(3f);
+    }
+
+    @Test
+    void zeroWeightsAndTheTimeFieldAreDropped() {
+        SparseVector vector = SparseVector.of(hash(5, 0, RedisService.VECTOR_TIME_FIELD, 1700000000, 7, 2));
+
+        assertThat(vector.productIds()).containsExactly(7L);
+        assertThat(SparseVector.of(hash(5, 0))).isSameAs(SparseVector.EMPTY);
+        assertThat(SparseVector.of(null)).isSameAs(SparseVector.EMPTY);
+    }
+
+    @Test
+    void dotIsAMergeJoinOverTheSharedIds() {
+        SparseVector a = SparseVector.of(hash(40, 1, 10, 2, 30, 3));
+        SparseVector b = SparseVector.of(hash(30, 4, 20, 5, 10, 6, 50, 7));
+
+        // shared ids 10 and 30: 2*6 + 3*4
+        assertThat(a.dot(b)).isEqualTo(24.0);
+        assertThat(b.dot(a)).isEqualTo(24.0);
+    }
+
+    @Test
+    void cosineMatchesTheDefinition() {
+        SparseVector a = SparseVector.of(hash(2, 1, 1, 1));
+        SparseVector b = SparseVector.of(hash(3, 1, 1, 1));
+
+        assertThat(a.cosine(a)).isCloseTo(1.0, within(1e-9));
+        assertThat(a.cosine(b)).isCloseTo(0.5, within(1e-9));
+        assertThat(a.cosine(SparseVector.of(hash(9, 4)))).isZero();
+        assertThat(a.cosine(SparseVector.EMPTY)).isZero();
+        assertThat(SparseVector.of(hash(1, 3, 2, 4)).norm()).isCloseTo(5.0, within(1e-9));
+    }
+
+    @Test
+    void cosineIgnoresScaleAndSeesOppositeDirections() {
+        SparseVector a = SparseVector.of(hash(1, 2, 2, 3));
+
+        assertThat(a.cosine(SparseVector.of(hash(2, 30, 1, 20)))).isCloseTo(1.0, within(1e-6));
+        assertThat(a.cosine(SparseVector.of(hash(1, -2, 2, -3)))).isCloseTo(-1.0, within(1e-6));
+    }
+}
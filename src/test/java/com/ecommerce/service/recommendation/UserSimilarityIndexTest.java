@@ -0,0 +1,122 @@
+package com.ecommerce.service.recommendation;
+
+import com.ecommerce.redis.RedisService;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class UserSimilarityIndexTest {
+
+    private final RedisService redisService = mock(RedisService.class);
+    private final UserSimilarityIndex index = new UserSimilarityIndex(redisService);
+
+    private static SparseVector vector(long... idAndWeight) {
+        Map<String, String> hash = new HashMap<>();
+        for (int i = 0; i < idAndWeight.length; i += 2) {
+            hash.put(String.valueOf(idAndWeight[i]), String.valueOf(idAndWeight[i + 1]));
+        }
+        return SparseVector.of(hash);
+    }
+
+    @Test
+    void signatureDependsOnDirectionNotLength() {
+        assertThat(UserSimilarityIndex.signature(vector(1, 2, 7, 4, 30, 1)))
+                .isEqualTo(UserSimilarityIndex.signature(vector(1, 4, 7, 8, 30, 2)));
+    }
+
+    @Test
+    void identicalUsersShareEveryBucket() {
+        index.update(1L, vector(10, 3, 20, 1));
+        index.update(2L, vector(10, 3, 20, 1));
+
+        assertThat(index.candidates(1L, 10, 100)).containsExactly(2L);
+        assertThat(index.candidates(2L, 10, 100)).containsExactly(1L);
+    }
+
+    @Test
+    void closestSignatureComesFirst() {
+        index.update(1L, vector(10, 5, 20, 5, 30, 5));
+        index.update(2L, vector(10, 5, 20, 5, 30, 5));
+        index.update(3L, vector(10, 5, 20, 5, 30, 5, 40, 4, 50, 4));
+
+        List<Long> candidates = index.candidates(1L, 10, 100);
+
+        assertThat(candidates).first().isEqualTo(2L);
+        assertThat(candidates).doesNotContain(1L);
+    }
+
+    @Test
+    void candidatesAreCappedByMaxCandidates() {
+        for (long user = 1; user <= 50; user++) index.update(user, vector(10, 3, 20, 1));
+
+        assertThat(index.candidates(1L, 10, 10_000)).hasSize(10).doesNotContain(1L);
+    }
+
+    @Test
+    void scanningStopsAfterMaxScannedBucketMembers() {
+        for (long user = 1; user <= 50; user++) index.update(user, vector(10, 3, 20, 1));
+
+        // the user itself counts as scanned, so at most 4 of the 5 scanned members are candidates
+        assertThat(index.candidates(1L, 10, 5)).hasSizeLessThanOrEqualTo(4);
+        assertThat(index.candidates(1L, 100, 0)).isEmpty();
+    }
+
+    @Test
+    void removedAndEmptiedUsersLeaveTheBuckets() {
+        index.update(1L, vector(10, 3, 20, 1));
+        index.update(2L, vector(10, 3, 20, 1));
+        index.update(3L, vector(10, 3, 20, 1));
+
+        index.remove(2L);
+        index.update(3L, SparseVector.EMPTY);
+
+        assertThat(index.candidates(1L, 10, 100)).isEmpty();
+        assertThat(index.candidates(2L, 10, 100)).isEmpty();
+        assertThat(index.userIds()).containsExactly(1L);
+    }
+
+    @Test
+    void movedUserLeavesItsOldBuckets() {
+        index.update(1L, vector(10, 3, 20, 1));
+        index.update(2L, vector(10, 3, 20, 1));
+
+        // opposite direction flips every signature bit, so no band can match any more
+        index.update(2L, vector(10, -3, 20, -1));
+
+        assertThat(index.candidates(1L, 10, 100)).isEmpty();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void startupBackfillsUsersWithoutStoredSignature() {
+        Map<String, String> vector = Map.of("10", "3", "20", "1", "t", "1700000000000");
+        doAnswer(invocation -> {
+            BiConsumer<Long, long[]> consumer = invocation.getArgument(0);
+            consumer.accept(1L, UserSimilarityIndex.signature(vector(10, 3, 20, 1)));
+            return null;
+        }).when(redisService).forEachUserSignature(any());
+        doAnswer(invocation -> {
+            BiConsumer<Long, Map<Object, Object>> consumer = invocation.getArgument(1);
+            consumer.accept(1L, Map.copyOf(vector));
+            consumer.accept(2L, Map.copyOf(vector));
+            return null;
+        }).when(redisService).forEachUserVector(anyInt(), any());
+
+        assertThat(index.isLoaded()).isFalse();
+        index.loadOnStartup();
+
+        assertThat(index.isLoaded()).isTrue();
+        assertThat(index.candidates(1L, 10, 100)).containsExactly(2L);
+        verify(redisService).saveUserSignatures(argThat(saved -> saved.keySet().equals(Set.of(2L))));
+        verify(redisService).markUserSignatureBackfilled();
+    }
+}